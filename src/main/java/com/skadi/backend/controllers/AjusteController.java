@@ -1,17 +1,20 @@
 package com.skadi.backend.controllers;
 
 import com.skadi.backend.dto.AjusteDTO;
+import com.skadi.backend.dto.PaginaDTO;
 import com.skadi.backend.services.AjusteService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.time.LocalDateTime;
 
 @RestController
 @RequestMapping("/ajustes")
@@ -21,11 +24,17 @@ public class AjusteController {
 
     private final AjusteService ajusteService;
 
-    @Operation(summary = "Listar todos los ajustes")
-    @ApiResponse(responseCode = "200", description = "Lista de ajustes realizados")
+    @Operation(summary = "Listar ajustes", description = "Lista los ajustes del más reciente al más antiguo, paginados por cursor")
+    @ApiResponse(responseCode = "200", description = "Página de ajustes realizados")
     @GetMapping
-    public ResponseEntity<List<AjusteDTO>> findAll() {
-        return ResponseEntity.ok(ajusteService.findAll());
+    public ResponseEntity<PaginaDTO<AjusteDTO>> findAll(
+            @Parameter(description = "Filtrar por ID de almacén") @RequestParam(required = false) Long almacenId,
+            @Parameter(description = "Filtrar por ID de variante") @RequestParam(required = false) Long varianteId,
+            @Parameter(description = "Fecha inicial (ISO format)", example = "2026-01-01T00:00:00") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @Parameter(description = "Fecha final (ISO format)", example = "2026-01-31T23:59:59") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @Parameter(description = "Cursor devuelto en siguienteCursor por la página anterior") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Cantidad de resultados por página (1-500)", example = "50") @RequestParam(required = false) Integer limite) {
+        return ResponseEntity.ok(ajusteService.findAll(almacenId, varianteId, desde, hasta, cursor, limite));
     }
 
     @Operation(summary = "Crear ajuste de inventario", description = "Ajusta el stock de una variante a un nuevo valor y registra el movimiento kardex")
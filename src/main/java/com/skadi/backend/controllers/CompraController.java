@@ -1,6 +1,7 @@
 package com.skadi.backend.controllers;
 
 import com.skadi.backend.dto.CompraDTO;
+import com.skadi.backend.dto.PaginaDTO;
 import com.skadi.backend.services.CompraService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -9,10 +10,12 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -23,11 +26,18 @@ public class CompraController {
 
     private final CompraService compraService;
 
-    @Operation(summary = "Listar todas las compras", description = "Obtiene todas las compras de la empresa")
-    @ApiResponse(responseCode = "200", description = "Lista de compras")
+    @Operation(summary = "Listar compras", description = "Lista las compras de la empresa de la más reciente a la más antigua, paginadas por cursor")
+    @ApiResponse(responseCode = "200", description = "Página de compras")
     @GetMapping
-    public ResponseEntity<List<CompraDTO>> findAll() {
-        return ResponseEntity.ok(compraService.findAll());
+    public ResponseEntity<PaginaDTO<CompraDTO>> findAll(
+            @Parameter(description = "Filtrar por ID de almacén") @RequestParam(required = false) Long almacenId,
+            @Parameter(description = "Fecha inicial (ISO format)", example = "2026-01-01T00:00:00") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @Parameter(description = "Fecha final (ISO format)", example = "2026-01-31T23:59:59") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @Parameter(description = "Buscar por nombre del proveedor (contiene)") @RequestParam(required = false) String proveedor,
+            @Parameter(description = "Número de documento exacto") @RequestParam(required = false) String numeroDocumento,
+            @Parameter(description = "Cursor devuelto en siguienteCursor por la página anterior") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Cantidad de resultados por página (1-500)", example = "50") @RequestParam(required = false) Integer limite) {
+        return ResponseEntity.ok(compraService.findAll(almacenId, desde, hasta, proveedor, numeroDocumento, cursor, limite));
     }
 
     @Operation(summary = "Obtener compra por ID")
@@ -1,6 +1,7 @@
 package com.skadi.backend.controllers;
 
 import com.skadi.backend.dto.KardexMovimientoDTO;
+import com.skadi.backend.dto.PaginaDTO;
 import com.skadi.backend.services.KardexService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,8 +14,6 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/kardex")
 @RequiredArgsConstructor
@@ -25,13 +24,15 @@ public class KardexController {
 
     @Operation(summary = "Consultar kardex valorizado", description = "Obtiene los movimientos kardex de una variante en un almacén, opcionalmente filtrado por lote. "
             +
-            "Incluye entradas, salidas, ajustes y saldos después de cada movimiento.")
-    @ApiResponse(responseCode = "200", description = "Lista de movimientos kardex con saldos")
+            "Incluye entradas, salidas, ajustes y saldos después de cada movimiento, en orden de secuencia y paginados por cursor.")
+    @ApiResponse(responseCode = "200", description = "Página de movimientos kardex con saldos")
     @GetMapping
-    public ResponseEntity<List<KardexMovimientoDTO>> findKardex(
+    public ResponseEntity<PaginaDTO<KardexMovimientoDTO>> findKardex(
             @Parameter(description = "ID de la variante de producto", required = true) @RequestParam Long varianteId,
             @Parameter(description = "ID del almacén", required = true) @RequestParam Long almacenId,
-            @Parameter(description = "ID del lote (opcional, para filtrar por lote específico)") @RequestParam(required = false) Long loteId) {
-        return ResponseEntity.ok(kardexService.findKardex(varianteId, almacenId, loteId));
+            @Parameter(description = "ID del lote (opcional, para filtrar por lote específico)") @RequestParam(required = false) Long loteId,
+            @Parameter(description = "Cursor devuelto en siguienteCursor por la página anterior") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Cantidad de resultados por página (1-500)", example = "50") @RequestParam(required = false) Integer limite) {
+        return ResponseEntity.ok(kardexService.findKardex(varianteId, almacenId, loteId, cursor, limite));
     }
 }
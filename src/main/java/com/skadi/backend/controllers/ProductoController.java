@@ -1,5 +1,6 @@
 package com.skadi.backend.controllers;
 
+import com.skadi.backend.dto.PaginaDTO;
 import com.skadi.backend.dto.ProductoDTO;
 import com.skadi.backend.services.ProductoService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -13,8 +14,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/productos")
 @RequiredArgsConstructor
@@ -23,11 +22,16 @@ public class ProductoController {
 
     private final ProductoService productoService;
 
-    @Operation(summary = "Listar todos los productos", description = "Obtiene todos los productos de la empresa actual")
-    @ApiResponse(responseCode = "200", description = "Lista de productos")
+    @Operation(summary = "Listar productos", description = "Obtiene los productos de la empresa actual, paginados por cursor")
+    @ApiResponse(responseCode = "200", description = "Página de productos")
     @GetMapping
-    public ResponseEntity<List<ProductoDTO>> findAll() {
-        return ResponseEntity.ok(productoService.findAll());
+    public ResponseEntity<PaginaDTO<ProductoDTO>> findAll(
+            @Parameter(description = "Filtrar por categoría") @RequestParam(required = false) String categoria,
+            @Parameter(description = "Filtrar por estado", example = "activo") @RequestParam(required = false) String estado,
+            @Parameter(description = "Buscar en nombre o código (contiene)") @RequestParam(required = false) String texto,
+            @Parameter(description = "Cursor devuelto en siguienteCursor por la página anterior") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Cantidad de resultados por página (1-500)", example = "50") @RequestParam(required = false) Integer limite) {
+        return ResponseEntity.ok(productoService.findAll(categoria, estado, texto, cursor, limite));
     }
 
     @Operation(summary = "Obtener producto por ID")
@@ -1,24 +1,31 @@
 package com.skadi.backend.controllers;
 
+import com.skadi.backend.dto.AgrupacionValorizacion;
+import com.skadi.backend.dto.FormatoExportacion;
 import com.skadi.backend.dto.KardexMovimientoDTO;
 import com.skadi.backend.dto.LoteDTO;
+import com.skadi.backend.dto.StockBajoDTO;
 import com.skadi.backend.dto.StockDTO;
+import com.skadi.backend.dto.ValorizacionDTO;
 import com.skadi.backend.services.ReporteService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/reportes")
@@ -35,11 +42,16 @@ public class ReporteController {
         return ResponseEntity.ok(reporteService.getStockGeneral());
     }
 
-    @Operation(summary = "Valorización del inventario", description = "Calcula el valor total del inventario usando costo promedio ponderado")
-    @ApiResponse(responseCode = "200", description = "Valorización con detalle")
+    @Operation(summary = "Valorización del inventario", description = "Calcula el valor total del inventario usando costo promedio ponderado, agrupado por almacén, categoría o producto. El detalle por registro de stock es opcional y paginado.")
+    @ApiResponse(responseCode = "200", description = "Valorización con totales por grupo")
     @GetMapping("/valorizacion")
-    public ResponseEntity<Map<String, Object>> getValorizacion() {
-        return ResponseEntity.ok(reporteService.getValorizacion());
+    public ResponseEntity<ValorizacionDTO> getValorizacion(
+            @Parameter(description = "Agrupación: almacen, categoria o producto", example = "almacen") @RequestParam(defaultValue = "almacen") String agrupacion,
+            @Parameter(description = "Incluir el detalle por registro de stock") @RequestParam(defaultValue = "false") boolean detalle,
+            @Parameter(description = "Cursor de la página de detalle") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Cantidad de registros de detalle por página (máx. 500)", example = "50") @RequestParam(required = false) Integer limite) {
+        return ResponseEntity.ok(reporteService.getValorizacion(AgrupacionValorizacion.desde(agrupacion), detalle,
+                cursor, limite));
     }
 
     @Operation(summary = "Lotes próximos a vencer", description = "Lista lotes cuya fecha de vencimiento está dentro del rango especificado")
@@ -68,11 +80,27 @@ public class ReporteController {
         return ResponseEntity.ok(reporteService.getMovimientosPorFecha(desde, hasta));
     }
 
-    @Operation(summary = "Productos con bajo stock", description = "Lista productos cuyo stock está por debajo del mínimo especificado")
+    @Operation(summary = "Exportar movimientos", description = "Descarga los movimientos kardex del período en CSV o NDJSON (un objeto JSON por línea). La respuesta se envía en streaming, sin límite de filas.")
+    @ApiResponse(responseCode = "200", description = "Archivo con los movimientos")
+    @GetMapping("/movimientos/export")
+    public void exportarMovimientos(
+            @Parameter(description = "Fecha inicio (ISO format)", example = "2026-01-01T00:00:00") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @Parameter(description = "Fecha fin (ISO format)", example = "2026-12-31T23:59:59") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @Parameter(description = "Formato del archivo", example = "csv") @RequestParam(defaultValue = "csv") String format,
+            HttpServletResponse response) throws IOException {
+        FormatoExportacion formato = FormatoExportacion.desde(format);
+        response.setContentType(formato.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"movimientos." + formato.getExtension() + "\"");
+        reporteService.exportarMovimientos(desde, hasta, formato, response.getWriter());
+    }
+
+    @Operation(summary = "Productos con bajo stock", description = "Lista las variantes cuyo stock por almacén, sumando todos sus lotes, llegó al punto de reorden o está debajo del stock mínimo configurado en la variante")
     @ApiResponse(responseCode = "200", description = "Lista de stock bajo")
     @GetMapping("/bajo-stock")
-    public ResponseEntity<List<StockDTO>> getProductosBajoStock(
-            @Parameter(description = "Stock mínimo de referencia") @RequestParam(defaultValue = "10") int stockMinimo) {
-        return ResponseEntity.ok(reporteService.getProductosBajoStock(stockMinimo));
+    public ResponseEntity<List<StockBajoDTO>> getProductosBajoStock(
+            @Parameter(description = "ID del almacén (opcional, todos si se omite)") @RequestParam(required = false) Long almacenId) {
+        return ResponseEntity.ok(reporteService.getProductosBajoStock(almacenId));
     }
 }
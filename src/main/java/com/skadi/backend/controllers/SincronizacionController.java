@@ -0,0 +1,34 @@
+package com.skadi.backend.controllers;
+
+import com.skadi.backend.dto.SincronizacionDTO;
+import com.skadi.backend.services.SincronizacionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/sync")
+@RequiredArgsConstructor
+@Tag(name = "Sincronización", description = "Cambios incrementales de catálogo y stock para clientes sin conexión")
+public class SincronizacionController {
+
+    private final SincronizacionService sincronizacionService;
+
+    @Operation(summary = "Cambios desde una versión", description = "Devuelve el estado actual de los productos, variantes, lotes y filas de stock que cambiaron después de la versión indicada, y las filas eliminadas. "
+            + "La primera sincronización usa since=0; las siguientes envían la versión devuelta, y mientras hayMas sea true se sigue pidiendo. "
+            + "Las páginas contienen versiones completas, por lo que una versión grande puede superar el límite.")
+    @ApiResponse(responseCode = "200", description = "Cambios posteriores a la versión")
+    @GetMapping
+    public ResponseEntity<SincronizacionDTO> cambios(
+            @Parameter(description = "Última versión que el cliente ya tiene (0 para la primera sincronización)", example = "0") @RequestParam(required = false) Long since,
+            @Parameter(description = "Cantidad de cambios por página (1-500)", example = "50") @RequestParam(required = false) Integer limite) {
+        return ResponseEntity.ok(sincronizacionService.cambios(since, limite));
+    }
+}
@@ -1,17 +1,26 @@
 package com.skadi.backend.controllers;
 
+import com.skadi.backend.dto.DisponibilidadDTO;
+import com.skadi.backend.dto.DisponibilidadRequest;
+import com.skadi.backend.dto.PaginaDTO;
 import com.skadi.backend.dto.StockDTO;
+import com.skadi.backend.services.NotificadorStock;
 import com.skadi.backend.services.StockService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -22,20 +31,31 @@ import java.util.List;
 public class StockController {
 
     private final StockService stockService;
+    private final NotificadorStock notificadorStock;
 
-    @Operation(summary = "Consultar stock", description = "Obtiene el stock actual. Puede filtrarse por almacén o por variante.")
-    @ApiResponse(responseCode = "200", description = "Lista de stock con valorización")
+    @Operation(summary = "Consultar stock", description = "Obtiene el stock actual paginado por cursor. Puede filtrarse por almacén y/o por variante.")
+    @ApiResponse(responseCode = "200", description = "Página de stock con valorización")
     @GetMapping
-    public ResponseEntity<List<StockDTO>> findStock(
+    public ResponseEntity<PaginaDTO<StockDTO>> findStock(
             @Parameter(description = "Filtrar por ID de almacén") @RequestParam(required = false) Long almacenId,
-            @Parameter(description = "Filtrar por ID de variante") @RequestParam(required = false) Long varianteId) {
+            @Parameter(description = "Filtrar por ID de variante") @RequestParam(required = false) Long varianteId,
+            @Parameter(description = "Cursor devuelto en siguienteCursor por la página anterior") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Cantidad de resultados por página (1-500)", example = "50") @RequestParam(required = false) Integer limite) {
+        return ResponseEntity.ok(stockService.findAll(almacenId, varianteId, cursor, limite));
+    }
+
+    @Operation(summary = "Disponibilidad de varias variantes", description = "Devuelve la cantidad disponible por variante y almacén (sumando lotes) para hasta 500 variantes en una sola consulta. Las variantes sin stock no aparecen en la respuesta.")
+    @ApiResponse(responseCode = "200", description = "Disponibilidad por variante y almacén")
+    @PostMapping("/disponibilidad")
+    public ResponseEntity<List<DisponibilidadDTO>> findDisponibilidad(@Valid @RequestBody DisponibilidadRequest request) {
+        return ResponseEntity.ok(stockService.findDisponibilidad(request));
+    }
 
-        if (almacenId != null) {
-            return ResponseEntity.ok(stockService.findByAlmacen(almacenId));
-        } else if (varianteId != null) {
-            return ResponseEntity.ok(stockService.findByVariante(varianteId));
-        } else {
-            return ResponseEntity.ok(stockService.findAll());
-        }
+    @Operation(summary = "Cambios de stock en vivo (SSE)", description = "Mantiene abierta la conexión y envía un evento 'stock' con el nuevo stock de cada fila (almacén, variante, lote) que cambia al confirmarse una venta, compra o ajuste de la empresa. "
+            + "Si el cliente no alcanza a leerlos, los cambios de una misma fila se combinan en el más reciente; si se acumulan demasiados recibe un evento 'desborde' y debe volver a consultar el stock.")
+    @ApiResponse(responseCode = "200", description = "Flujo de eventos text/event-stream")
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream() {
+        return notificadorStock.suscribir();
     }
 }
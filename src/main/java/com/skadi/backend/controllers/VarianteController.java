@@ -1,10 +1,12 @@
 package com.skadi.backend.controllers;
 
 import com.skadi.backend.dto.VarianteDTO;
+import com.skadi.backend.dto.VarianteSkuDTO;
 import com.skadi.backend.services.VarianteService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -45,6 +47,27 @@ public class VarianteController {
         return ResponseEntity.ok(varianteService.findById(id));
     }
 
+    @Operation(summary = "Buscar variante por SKU", description = "Resuelve un SKU o código de barras a la variante de la empresa, desde el catálogo en memoria")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Variante encontrada"),
+            @ApiResponse(responseCode = "404", description = "No hay variante con ese SKU")
+    })
+    @GetMapping("/variantes/sku/{sku}")
+    public ResponseEntity<VarianteSkuDTO> findBySku(
+            @Parameter(description = "SKU o código de barras") @PathVariable String sku) {
+        return ResponseEntity.ok(varianteService.findBySku(sku));
+    }
+
+    @Operation(summary = "Buscar variantes por varios SKU", description = "Recibe un arreglo de SKU (hasta 500) y devuelve las variantes encontradas en el mismo orden; los SKU sin variante se omiten")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Variantes encontradas"),
+            @ApiResponse(responseCode = "400", description = "Más de 500 SKU, o un SKU nulo o vacío")
+    })
+    @PostMapping("/variantes/sku")
+    public ResponseEntity<List<VarianteSkuDTO>> findBySkus(@RequestBody List<String> skus) {
+        return ResponseEntity.ok(varianteService.findBySkus(skus));
+    }
+
     @Operation(summary = "Actualizar variante")
     @PutMapping("/variantes/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'OPERADOR')")
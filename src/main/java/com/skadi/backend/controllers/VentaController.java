@@ -1,18 +1,28 @@
 package com.skadi.backend.controllers;
 
+import com.skadi.backend.dto.CotizacionDTO;
+import com.skadi.backend.dto.PaginaDTO;
+import com.skadi.backend.dto.VentaBatchResultadoDTO;
 import com.skadi.backend.dto.VentaDTO;
+import com.skadi.backend.services.SecuenciadorVentas;
+import com.skadi.backend.services.VentaBatchService;
 import com.skadi.backend.services.VentaService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -22,12 +32,21 @@ import java.util.List;
 public class VentaController {
 
     private final VentaService ventaService;
+    private final VentaBatchService ventaBatchService;
+    private final SecuenciadorVentas secuenciadorVentas;
 
-    @Operation(summary = "Listar todas las ventas", description = "Obtiene todas las ventas de la empresa")
-    @ApiResponse(responseCode = "200", description = "Lista de ventas")
+    @Operation(summary = "Listar ventas", description = "Lista las ventas de la empresa de la más reciente a la más antigua, paginadas por cursor")
+    @ApiResponse(responseCode = "200", description = "Página de ventas")
     @GetMapping
-    public ResponseEntity<List<VentaDTO>> findAll() {
-        return ResponseEntity.ok(ventaService.findAll());
+    public ResponseEntity<PaginaDTO<VentaDTO>> findAll(
+            @Parameter(description = "Filtrar por ID de almacén") @RequestParam(required = false) Long almacenId,
+            @Parameter(description = "Fecha inicial (ISO format)", example = "2026-01-01T00:00:00") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @Parameter(description = "Fecha final (ISO format)", example = "2026-01-31T23:59:59") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @Parameter(description = "Buscar por nombre del cliente (contiene)") @RequestParam(required = false) String cliente,
+            @Parameter(description = "Número de documento exacto") @RequestParam(required = false) String numeroDocumento,
+            @Parameter(description = "Cursor devuelto en siguienteCursor por la página anterior") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Cantidad de resultados por página (1-500)", example = "50") @RequestParam(required = false) Integer limite) {
+        return ResponseEntity.ok(ventaService.findAll(almacenId, desde, hasta, cliente, numeroDocumento, cursor, limite));
     }
 
     @Operation(summary = "Obtener venta por ID")
@@ -50,6 +69,31 @@ public class VentaController {
     @PostMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'OPERADOR')")
     public ResponseEntity<VentaDTO> create(@Valid @RequestBody VentaDTO dto) {
+        if (secuenciadorVentas.isHabilitado()) {
+            return ResponseEntity.ok(secuenciadorVentas.registrar(dto));
+        }
         return ResponseEntity.ok(ventaService.create(dto));
     }
+
+    @Operation(summary = "Cotizar venta", description = "Calcula sin registrar nada los lotes de los que saldría cada línea (FEFO/FIFO), el stock faltante y el total. No bloquea stock ni genera movimientos kardex")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Cotización calculada (revisar disponible y faltante por línea)"),
+            @ApiResponse(responseCode = "400", description = "Datos inválidos"),
+            @ApiResponse(responseCode = "404", description = "Almacén, variante o lote no encontrado")
+    })
+    @PostMapping("/cotizar")
+    public ResponseEntity<CotizacionDTO> cotizar(@Valid @RequestBody VentaDTO dto) {
+        return ResponseEntity.ok(ventaService.cotizar(dto));
+    }
+
+    @Operation(summary = "Registrar ventas en lote", description = "Recibe un arreglo JSON de ventas (mismo formato que POST /ventas), lo procesa en bloques con una transacción por almacén y devuelve el resultado de cada venta en el orden enviado")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Resultado por venta (ID creado o error); si el arreglo está mal formado, el último resultado indica dónde se detuvo la lectura"),
+            @ApiResponse(responseCode = "400", description = "El cuerpo no empieza con un arreglo de ventas")
+    })
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'OPERADOR')")
+    public ResponseEntity<List<VentaBatchResultadoDTO>> createBatch(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(ventaBatchService.registrar(request.getInputStream()));
+    }
 }
@@ -0,0 +1,28 @@
+package com.skadi.backend.dto;
+
+import com.skadi.backend.exceptions.BadRequestException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Criterios de agrupación del reporte de valorización.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum AgrupacionValorizacion {
+
+    ALMACEN("almacen"),
+    CATEGORIA("categoria"),
+    PRODUCTO("producto");
+
+    private final String clave;
+
+    public static AgrupacionValorizacion desde(String agrupacion) {
+        for (AgrupacionValorizacion a : values()) {
+            if (a.clave.equalsIgnoreCase(agrupacion)) {
+                return a;
+            }
+        }
+        throw new BadRequestException("Agrupación no soportada: " + agrupacion + " (use almacen, categoria o producto)");
+    }
+}
@@ -0,0 +1,30 @@
+package com.skadi.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Cotización de una venta: lotes que saldrían y stock faltante, sin registrar nada")
+public class CotizacionDTO {
+
+    @Schema(description = "ID del almacén cotizado", example = "1")
+    private Long almacenId;
+
+    @Schema(description = "true si todas las líneas tienen stock suficiente", example = "true")
+    private Boolean disponible;
+
+    @Schema(description = "Total de la venta", example = "175.00")
+    private BigDecimal total;
+
+    @Schema(description = "Líneas en el orden enviado")
+    private List<CotizacionLineaDTO> lineas;
+}
@@ -0,0 +1,42 @@
+package com.skadi.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Línea cotizada con los lotes asignados")
+public class CotizacionLineaDTO {
+
+    @Schema(description = "ID de la variante", example = "1")
+    private Long varianteId;
+
+    @Schema(description = "ID del lote pedido (null si se asigna por FEFO)", example = "1")
+    private Long loteId;
+
+    @Schema(description = "Cantidad pedida", example = "5")
+    private Integer cantidad;
+
+    @Schema(description = "Cantidad que hay en stock para la línea", example = "5")
+    private Integer cantidadAsignada;
+
+    @Schema(description = "Cantidad que falta para cubrir la línea", example = "0")
+    private Integer faltante;
+
+    @Schema(description = "Precio unitario de venta", example = "35.00")
+    private BigDecimal precioUnitario;
+
+    @Schema(description = "Subtotal de la línea", example = "175.00")
+    private BigDecimal subtotal;
+
+    @Schema(description = "Lotes de los que saldría la mercadería, en orden de salida")
+    private List<CotizacionLoteDTO> lotes;
+}
@@ -0,0 +1,29 @@
+package com.skadi.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Cantidad que saldría de un lote (o del stock sin lote)")
+public class CotizacionLoteDTO {
+
+    @Schema(description = "ID del lote (null para stock sin lote)", example = "1")
+    private Long loteId;
+
+    @Schema(description = "Código del lote", example = "L-2026-001")
+    private String codigoLote;
+
+    @Schema(description = "Fecha de vencimiento del lote", example = "2026-12-31")
+    private LocalDate fechaVencimiento;
+
+    @Schema(description = "Cantidad asignada", example = "5")
+    private Integer cantidad;
+}
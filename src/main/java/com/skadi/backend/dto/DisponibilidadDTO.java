@@ -0,0 +1,24 @@
+package com.skadi.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Cantidad disponible de una variante en un almacén, sumando sus lotes")
+public class DisponibilidadDTO {
+
+    @Schema(description = "ID de la variante", example = "1")
+    private Long varianteId;
+
+    @Schema(description = "ID del almacén", example = "1")
+    private Long almacenId;
+
+    @Schema(description = "Cantidad disponible", example = "25")
+    private Long disponible;
+}
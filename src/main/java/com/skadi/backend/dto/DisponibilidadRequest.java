@@ -0,0 +1,28 @@
+package com.skadi.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Request de disponibilidad de varias variantes")
+public class DisponibilidadRequest {
+
+    @Schema(description = "IDs de las variantes (hasta 500)", example = "[1, 2, 3]", requiredMode = Schema.RequiredMode.REQUIRED)
+    @NotEmpty(message = "Las variantes son requeridas")
+    @Size(max = 500, message = "Se pueden consultar hasta 500 variantes")
+    private List<@NotNull(message = "Los IDs de variante no pueden ser nulos") Long> varianteIds;
+
+    @Schema(description = "Filtrar por ID de almacén (opcional)", example = "1")
+    private Long almacenId;
+}
@@ -0,0 +1,28 @@
+package com.skadi.backend.dto;
+
+import com.skadi.backend.exceptions.BadRequestException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Formatos de exportación de reportes.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum FormatoExportacion {
+
+    CSV("csv", "text/csv"),
+    NDJSON("ndjson", "application/x-ndjson");
+
+    private final String extension;
+    private final String contentType;
+
+    public static FormatoExportacion desde(String formato) {
+        for (FormatoExportacion f : values()) {
+            if (f.extension.equalsIgnoreCase(formato)) {
+                return f;
+            }
+        }
+        throw new BadRequestException("Formato no soportado: " + formato + " (use csv o ndjson)");
+    }
+}
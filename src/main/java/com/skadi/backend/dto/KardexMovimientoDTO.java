@@ -19,6 +19,9 @@ public class KardexMovimientoDTO {
     @Schema(description = "ID del movimiento", example = "1")
     private Long id;
 
+    @Schema(description = "Orden del movimiento en el kardex de la variante en el almacén", example = "12")
+    private Long secuencia;
+
     @Schema(description = "ID del almacén", example = "1")
     private Long almacenId;
 
@@ -0,0 +1,23 @@
+package com.skadi.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Página de resultados con paginación por cursor")
+public class PaginaDTO<T> {
+
+    @Schema(description = "Elementos de la página")
+    private List<T> items;
+
+    @Schema(description = "Cursor para pedir la página siguiente (null si no hay más resultados)", example = "MjAyNi0wMS0xNVQxNDowMHw0Mg")
+    private String siguienteCursor;
+}
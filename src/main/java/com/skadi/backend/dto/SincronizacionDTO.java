@@ -0,0 +1,38 @@
+package com.skadi.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Cambios del catálogo y del stock posteriores a una versión")
+public class SincronizacionDTO {
+
+    @Schema(description = "Versión hasta la que llegan los cambios entregados; se envía como since en la siguiente llamada", example = "1542")
+    private Long version;
+
+    @Schema(description = "Si true, hay más cambios después de esta versión", example = "false")
+    private Boolean hayMas;
+
+    @Schema(description = "Productos creados o modificados (sin variantes)")
+    private List<ProductoDTO> productos;
+
+    @Schema(description = "Variantes creadas o modificadas")
+    private List<VarianteDTO> variantes;
+
+    @Schema(description = "Lotes creados o modificados")
+    private List<LoteDTO> lotes;
+
+    @Schema(description = "Filas de stock por almacén y lote que cambiaron")
+    private List<StockDTO> stock;
+
+    @Schema(description = "Filas eliminadas")
+    private List<SincronizacionEliminadoDTO> eliminados;
+}
@@ -0,0 +1,22 @@
+package com.skadi.backend.dto;
+
+import com.skadi.backend.entities.EntidadSincronizacion;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Fila eliminada que el cliente debe borrar de su copia local")
+public class SincronizacionEliminadoDTO {
+
+    @Schema(description = "Tipo de fila", example = "VARIANTE")
+    private EntidadSincronizacion entidad;
+
+    @Schema(description = "ID de la fila eliminada", example = "12")
+    private Long id;
+}
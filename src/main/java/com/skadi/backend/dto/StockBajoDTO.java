@@ -0,0 +1,52 @@
+package com.skadi.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Variante cuyo stock en un almacén llegó a su punto de reorden o stock mínimo")
+public class StockBajoDTO {
+
+    @Schema(description = "ID del almacén", example = "1")
+    private Long almacenId;
+
+    @Schema(description = "Nombre del almacén", example = "Almacén Central")
+    private String almacenNombre;
+
+    @Schema(description = "ID de la variante", example = "1")
+    private Long varianteId;
+
+    @Schema(description = "Nombre de la variante", example = "Negro - 15.6\"")
+    private String varianteNombre;
+
+    @Schema(description = "Nombre del producto", example = "Laptop HP Pavilion")
+    private String productoNombre;
+
+    @Schema(description = "SKU de la variante", example = "HP-PAV-15-NGR")
+    private String sku;
+
+    @Schema(description = "Stock total en el almacén (suma de todos los lotes)", example = "8")
+    private Long stock;
+
+    @Schema(description = "Stock mínimo configurado", example = "10")
+    private Integer stockMinimo;
+
+    @Schema(description = "Punto de reorden configurado", example = "25")
+    private Integer puntoReorden;
+
+    @Schema(description = "true si el stock está por debajo del mínimo", example = "true")
+    private Boolean bajoMinimo;
+
+    // Proyección JPQL: bajoMinimo se deriva de los valores agregados
+    public StockBajoDTO(Long almacenId, String almacenNombre, Long varianteId, String varianteNombre,
+            String productoNombre, String sku, Long stock, Integer stockMinimo, Integer puntoReorden) {
+        this(almacenId, almacenNombre, varianteId, varianteNombre, productoNombre, sku, stock, stockMinimo,
+                puntoReorden, stockMinimo != null && stock < stockMinimo);
+    }
+}
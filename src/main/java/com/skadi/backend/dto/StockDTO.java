@@ -15,6 +15,9 @@ import java.math.BigDecimal;
 @Schema(description = "Stock actual de una variante en un almacén")
 public class StockDTO {
 
+    @Schema(description = "ID del registro de stock", example = "1")
+    private Long id;
+
     @Schema(description = "ID del almacén", example = "1")
     private Long almacenId;
 
@@ -47,4 +50,12 @@ public class StockDTO {
 
     @Schema(description = "Valor total del stock (stock × costo promedio)", example = "2422.50")
     private BigDecimal valorTotal;
+
+    // Proyección JPQL: el valor total se calcula aquí en lugar de leer las entidades
+    public StockDTO(Long id, Long almacenId, String almacenNombre, Long varianteId, String varianteNombre,
+            String productoNombre, String sku, Long loteId, String codigoLote, Integer stock,
+            BigDecimal costoPromedio) {
+        this(id, almacenId, almacenNombre, varianteId, varianteNombre, productoNombre, sku, loteId, codigoLote,
+                stock, costoPromedio, costoPromedio.multiply(BigDecimal.valueOf(stock)));
+    }
 }
@@ -0,0 +1,34 @@
+package com.skadi.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Nuevo stock de una fila (almacén, variante, lote) después de una venta, compra o ajuste")
+public class StockEventoDTO {
+
+    @Schema(description = "ID de la fila de stock", example = "1")
+    private Long stockId;
+
+    @Schema(description = "ID del almacén", example = "1")
+    private Long almacenId;
+
+    @Schema(description = "ID de la variante", example = "1")
+    private Long varianteId;
+
+    @Schema(description = "ID del lote (null para el stock sin lote)", example = "1")
+    private Long loteId;
+
+    @Schema(description = "Stock después del cambio", example = "25")
+    private Integer stock;
+
+    @Schema(description = "Secuencia del kardex de (almacén, variante) que produjo el cambio; de dos "
+            + "eventos de la misma fila vale el de secuencia mayor", example = "42")
+    private Long secuencia;
+}
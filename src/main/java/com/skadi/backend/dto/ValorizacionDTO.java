@@ -0,0 +1,34 @@
+package com.skadi.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Valorización del inventario a costo promedio ponderado")
+public class ValorizacionDTO {
+
+    @Schema(description = "Criterio de agrupación", example = "almacen", allowableValues = { "almacen", "categoria",
+            "producto" })
+    private String agrupacion;
+
+    @Schema(description = "Valor total del inventario", example = "15420.75")
+    private BigDecimal valorTotal;
+
+    @Schema(description = "Total de unidades en stock", example = "1250")
+    private Long totalUnidades;
+
+    @Schema(description = "Valor por almacén, categoría o producto")
+    private List<ValorizacionGrupoDTO> grupos;
+
+    @Schema(description = "Detalle por registro de stock (solo si se solicita)")
+    private PaginaDTO<StockDTO> detalle;
+}
@@ -0,0 +1,34 @@
+package com.skadi.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Valor del inventario de un almacén, categoría o producto")
+public class ValorizacionGrupoDTO {
+
+    @Schema(description = "ID del almacén o producto (null al agrupar por categoría)", example = "1")
+    private Long id;
+
+    @Schema(description = "Nombre del almacén, categoría o producto", example = "Almacén Central")
+    private String nombre;
+
+    @Schema(description = "Unidades en stock", example = "95")
+    private Long unidades;
+
+    @Schema(description = "Valor del stock (stock × costo promedio)", example = "2422.50")
+    private BigDecimal valorTotal;
+
+    // Proyección JPQL para agrupaciones sin ID (categoría)
+    public ValorizacionGrupoDTO(String nombre, Long unidades, BigDecimal valorTotal) {
+        this(null, nombre, unidades, valorTotal);
+    }
+}
@@ -2,6 +2,7 @@ package com.skadi.backend.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -34,4 +35,12 @@ public class VarianteDTO {
 
     @Schema(description = "Precio de venta", example = "3200.00")
     private BigDecimal precioVenta;
+
+    @Schema(description = "Stock mínimo por almacén; debajo de este valor la variante figura como crítica", example = "10")
+    @PositiveOrZero(message = "El stock mínimo no puede ser negativo")
+    private Integer stockMinimo;
+
+    @Schema(description = "Punto de reorden por almacén; en o debajo de este valor la variante debe reponerse", example = "25")
+    @PositiveOrZero(message = "El punto de reorden no puede ser negativo")
+    private Integer puntoReorden;
 }
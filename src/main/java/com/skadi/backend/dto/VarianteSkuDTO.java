@@ -0,0 +1,38 @@
+package com.skadi.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Resumen de la variante encontrada por SKU o código de barras")
+public class VarianteSkuDTO {
+
+    @Schema(description = "SKU de la variante", example = "HP-PAV-15-NGR")
+    private String sku;
+
+    @Schema(description = "ID de la variante", example = "1")
+    private Long varianteId;
+
+    @Schema(description = "Nombre de la variante", example = "Negro - 15.6\"")
+    private String nombre;
+
+    @Schema(description = "ID del producto", example = "1")
+    private Long productoId;
+
+    @Schema(description = "Nombre del producto", example = "Laptop HP Pavilion")
+    private String productoNombre;
+
+    @Schema(description = "Precio de venta", example = "2500.00")
+    private BigDecimal precioVenta;
+
+    @Schema(description = "Indica si el producto requiere lote", example = "false")
+    private Boolean requiereLote;
+}
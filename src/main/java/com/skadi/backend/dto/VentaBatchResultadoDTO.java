@@ -0,0 +1,27 @@
+package com.skadi.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Resultado de una venta dentro de una carga masiva")
+public class VentaBatchResultadoDTO {
+
+    @Schema(description = "Posición de la venta en el arreglo enviado (desde 0), o donde se detuvo la lectura si el cuerpo es inválido", example = "0")
+    private Integer indice;
+
+    @Schema(description = "Número de documento enviado", example = "BOL-001-0005678")
+    private String numeroDocumento;
+
+    @Schema(description = "ID de la venta creada (null si hubo error)", example = "15")
+    private Long ventaId;
+
+    @Schema(description = "Motivo por el que no se registró la venta", example = "Stock insuficiente para variante Negro. Disponible: 2, Requerido: 5")
+    private String error;
+}
@@ -9,7 +9,10 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "ajustes_inventario")
+@Table(name = "ajustes_inventario", indexes = {
+        @Index(name = "idx_ajustes_empresa_fecha", columnList = "empresa_id, fecha, id"),
+        @Index(name = "idx_ajustes_almacen_fecha", columnList = "almacen_id, fecha, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
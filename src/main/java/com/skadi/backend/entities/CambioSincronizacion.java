@@ -0,0 +1,31 @@
+package com.skadi.backend.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Última versión en la que cambió cada producto, variante, lote o fila de stock de una
+ * empresa. Hay una sola fila por entidad: cada cambio la reemplaza, y una baja la deja como
+ * lápida ({@code eliminado}) para que los clientes la borren de su copia local.
+ */
+@Entity
+@Table(name = "sincronizacion_cambios",
+        indexes = @Index(name = "idx_sincronizacion_empresa_version", columnList = "empresa_id, version"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CambioSincronizacion {
+
+    @EmbeddedId
+    private CambioSincronizacionId id;
+
+    @Column(nullable = false)
+    private Long version;
+
+    @Column(nullable = false)
+    private Boolean eliminado;
+}
@@ -0,0 +1,32 @@
+package com.skadi.backend.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.io.Serializable;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CambioSincronizacionId implements Serializable {
+
+    @Column(name = "empresa_id", nullable = false)
+    private Long empresaId;
+
+    // VARCHAR y no el ENUM nativo de MySQL: agregar un tipo no requiere migrar la columna
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(nullable = false, length = 20)
+    private EntidadSincronizacion entidad;
+
+    @Column(name = "entidad_id", nullable = false)
+    private Long entidadId;
+}
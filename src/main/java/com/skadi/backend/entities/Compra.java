@@ -12,7 +12,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "compras")
+@Table(name = "compras", indexes = {
+        @Index(name = "idx_compras_empresa_fecha", columnList = "empresa_id, fecha, id"),
+        @Index(name = "idx_compras_almacen_fecha", columnList = "almacen_id, fecha, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,11 @@
+package com.skadi.backend.entities;
+
+/**
+ * Tipos de fila que los clientes sin conexión (POS) sincronizan con {@code GET /sync}.
+ */
+public enum EntidadSincronizacion {
+    PRODUCTO,
+    VARIANTE,
+    LOTE,
+    STOCK
+}
@@ -0,0 +1,27 @@
+package com.skadi.backend.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Siguiente id libre por tabla para los ids asignados por bloques
+ * (ver {@link com.skadi.backend.ids.BloqueIdGenerator}).
+ */
+@Entity
+@Table(name = "id_bloques")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdBloque {
+
+    @Id
+    @Column(length = 64)
+    private String tabla;
+
+    @Column(nullable = false)
+    private Long siguiente;
+}
@@ -1,5 +1,6 @@
 package com.skadi.backend.entities;
 
+import com.skadi.backend.ids.BloqueId;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -10,7 +11,11 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "kardex_movimientos")
+@Table(name = "kardex_movimientos", uniqueConstraints = @UniqueConstraint(name = "uk_kardex_variante_almacen_secuencia",
+        columnNames = { "variante_id", "almacen_id", "secuencia" }), indexes = {
+        @Index(name = "idx_kardex_empresa_fecha", columnList = "empresa_id, fecha, id"),
+        @Index(name = "idx_kardex_variante_almacen_lote_secuencia", columnList = "variante_id, almacen_id, lote_id, secuencia")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -18,7 +23,7 @@ import java.time.LocalDateTime;
 public class KardexMovimiento {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @BloqueId
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -44,6 +49,10 @@ public class KardexMovimiento {
     @Column(nullable = false)
     private LocalDateTime fecha;
 
+    // Orden del movimiento dentro de (almacén, variante); lo asigna el saldo agregado bloqueado
+    @Column(nullable = false)
+    private Long secuencia;
+
     @Column(nullable = false, length = 20)
     private String tipo; // entrada, salida, ajuste
 
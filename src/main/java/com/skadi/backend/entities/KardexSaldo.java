@@ -0,0 +1,45 @@
+package com.skadi.backend.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Saldo vigente del kardex por (empresa, almacén, variante, lote).
+ * Se mantiene en cada movimiento para no buscar el último movimiento en kardex_movimientos.
+ */
+@Entity
+@Table(name = "kardex_saldos")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class KardexSaldo {
+
+    @EmbeddedId
+    private KardexSaldoId id;
+
+    @Column(name = "saldo_cantidad", nullable = false)
+    private Integer saldoCantidad;
+
+    @Column(name = "saldo_costo_unitario", nullable = false, precision = 10, scale = 2)
+    private BigDecimal saldoCostoUnitario;
+
+    // Último número asignado a los movimientos del saldo; en el saldo agregado (lote 0) es la
+    // secuencia de kardex_movimientos para (almacén, variante)
+    @Column(nullable = false)
+    private Long secuencia;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+}
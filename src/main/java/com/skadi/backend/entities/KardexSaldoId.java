@@ -0,0 +1,31 @@
+package com.skadi.backend.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KardexSaldoId implements Serializable {
+
+    // loteId = 0 identifica el saldo agregado de la variante (todos los lotes y stock sin lote)
+    public static final Long SIN_LOTE = 0L;
+
+    @Column(name = "empresa_id", nullable = false)
+    private Long empresaId;
+
+    @Column(name = "almacen_id", nullable = false)
+    private Long almacenId;
+
+    @Column(name = "variante_id", nullable = false)
+    private Long varianteId;
+
+    @Column(name = "lote_id", nullable = false)
+    private Long loteId;
+}
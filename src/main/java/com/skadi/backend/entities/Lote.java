@@ -10,7 +10,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "lotes")
+@Table(name = "lotes", indexes = @Index(name = "idx_lotes_empresa_vencimiento", columnList = "empresa_id, fecha_vencimiento"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -25,6 +25,11 @@ public class Lote {
     @JoinColumn(name = "variante_id", nullable = false)
     private ProductoVariante variante;
 
+    // Copia de variante.producto.empresa para verificar el tenant en la misma consulta
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "empresa_id", nullable = false)
+    private Empresa empresa;
+
     @Column(name = "codigo_lote", nullable = false, length = 100)
     private String codigoLote;
 
@@ -11,7 +11,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "productos")
+@Table(name = "productos", indexes = @Index(name = "idx_productos_empresa_codigo", columnList = "empresa_id, codigo"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
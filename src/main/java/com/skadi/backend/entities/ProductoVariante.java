@@ -12,7 +12,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "producto_variantes")
+@Table(name = "producto_variantes", indexes = {
+        @Index(name = "idx_variantes_empresa", columnList = "empresa_id, id"),
+        @Index(name = "idx_variantes_sku", columnList = "sku")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -27,6 +30,11 @@ public class ProductoVariante {
     @JoinColumn(name = "producto_id", nullable = false)
     private Producto producto;
 
+    // Copia de producto.empresa para verificar el tenant en la misma consulta
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "empresa_id", nullable = false)
+    private Empresa empresa;
+
     @Column(nullable = false, length = 150)
     private String nombre; // ej: "Rojo - L", "Caja x 12"
 
@@ -39,6 +47,13 @@ public class ProductoVariante {
     @Column(name = "precio_venta", precision = 10, scale = 2)
     private BigDecimal precioVenta;
 
+    // Umbrales de reposición por almacén; null = sin control de stock bajo
+    @Column(name = "stock_minimo")
+    private Integer stockMinimo;
+
+    @Column(name = "punto_reorden")
+    private Integer puntoReorden;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
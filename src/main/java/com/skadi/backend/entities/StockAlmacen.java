@@ -9,7 +9,9 @@ import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "stock_almacen")
+@Table(name = "stock_almacen", uniqueConstraints = @UniqueConstraint(name = "uk_stock_almacen_variante_lote",
+        columnNames = { "almacen_id", "variante_id", "lote_clave" }),
+        indexes = @Index(name = "idx_stock_variante_almacen", columnList = "variante_id, almacen_id, stock"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -36,6 +38,11 @@ public class StockAlmacen {
     @JoinColumn(name = "lote_id")
     private Lote lote;
 
+    // lote_id o 0 para el stock sin lote; permite la clave única (MySQL admite varios NULL)
+    @Column(name = "lote_clave", insertable = false, updatable = false,
+            columnDefinition = "BIGINT GENERATED ALWAYS AS (COALESCE(lote_id, 0))")
+    private Long loteClave;
+
     @Column(nullable = false)
     @Builder.Default
     private Integer stock = 0;
@@ -38,6 +38,11 @@ public class Usuario implements UserDetails {
     @Column(nullable = false, length = 30)
     private String rol; // admin, operador, consulta
 
+    // Se incrementa al cambiar rol o credenciales para invalidar los tokens emitidos antes
+    @Column(name = "version_token", nullable = false)
+    @Builder.Default
+    private Integer versionToken = 0;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
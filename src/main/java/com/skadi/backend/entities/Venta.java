@@ -12,7 +12,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "ventas")
+@Table(name = "ventas", indexes = {
+        @Index(name = "idx_ventas_empresa_fecha", columnList = "empresa_id, fecha, id"),
+        @Index(name = "idx_ventas_almacen_fecha", columnList = "almacen_id, fecha, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
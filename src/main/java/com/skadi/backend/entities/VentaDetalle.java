@@ -1,5 +1,6 @@
 package com.skadi.backend.entities;
 
+import com.skadi.backend.ids.BloqueId;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -17,7 +18,7 @@ import java.math.BigDecimal;
 public class VentaDetalle {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @BloqueId
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,27 @@
+package com.skadi.backend.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Contador de versiones de sincronización de cada empresa. Cada transacción que modifica
+ * el catálogo o el stock toma el siguiente número al confirmar.
+ */
+@Entity
+@Table(name = "sincronizacion_versiones")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class VersionSincronizacion {
+
+    @Id
+    @Column(name = "empresa_id")
+    private Long empresaId;
+
+    @Column(nullable = false)
+    private Long version;
+}
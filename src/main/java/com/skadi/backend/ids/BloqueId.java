@@ -0,0 +1,24 @@
+package com.skadi.backend.ids;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Id numérico asignado en memoria a partir de bloques reservados en la tabla id_bloques.
+ * A diferencia de IDENTITY, Hibernate conoce el id antes del INSERT y puede agrupar
+ * las inserciones en lotes JDBC.
+ */
+@IdGeneratorType(BloqueIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.FIELD, ElementType.METHOD })
+public @interface BloqueId {
+
+    /**
+     * Cantidad de ids reservados por cada acceso a id_bloques.
+     */
+    int tamanioBloque() default 100;
+}
@@ -0,0 +1,112 @@
+package com.skadi.backend.ids;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.AnnotationBasedGenerator;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.generator.GeneratorCreationContext;
+import org.hibernate.jdbc.AbstractReturningWork;
+
+import java.lang.reflect.Member;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumSet;
+
+/**
+ * Generador hi/lo respaldado por la tabla id_bloques (una fila por tabla).
+ * Reserva {@link BloqueId#tamanioBloque()} ids en una transacción aislada y los entrega
+ * desde memoria. La primera vez la fila se inicia con MAX(id) + 1 de la tabla, de modo que
+ * las tablas que antes usaban IDENTITY continúan después del último id existente.
+ * Los ids no usados de un bloque se pierden al reiniciar la aplicación.
+ */
+public class BloqueIdGenerator implements BeforeExecutionGenerator, AnnotationBasedGenerator<BloqueId> {
+
+    private int tamanioBloque;
+    private String tabla;
+
+    private long siguiente;
+    private long limite;
+
+    @Override
+    public void initialize(BloqueId config, Member member, GeneratorCreationContext context) {
+        this.tamanioBloque = config.tamanioBloque();
+        this.tabla = context.getPersistentClass().getTable().getName();
+    }
+
+    @Override
+    public synchronized Object generate(SharedSessionContractImplementor session, Object owner,
+            Object currentValue, EventType eventType) {
+        if (siguiente >= limite) {
+            long inicio = session.getTransactionCoordinator()
+                    .createIsolationDelegate()
+                    .delegateWork(new ReservarBloque(), true);
+            siguiente = inicio;
+            limite = inicio + tamanioBloque;
+        }
+        return siguiente++;
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+    /**
+     * Reserva el siguiente bloque y retorna su primer id.
+     */
+    private class ReservarBloque extends AbstractReturningWork<Long> {
+
+        @Override
+        public Long execute(Connection connection) throws SQLException {
+            Long actual = leerParaActualizar(connection);
+            if (actual == null) {
+                actual = iniciar(connection);
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "UPDATE id_bloques SET siguiente = ? WHERE tabla = ?")) {
+                ps.setLong(1, actual + tamanioBloque);
+                ps.setString(2, tabla);
+                ps.executeUpdate();
+            }
+            return actual;
+        }
+
+        private Long leerParaActualizar(Connection connection) throws SQLException {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "SELECT siguiente FROM id_bloques WHERE tabla = ? FOR UPDATE")) {
+                ps.setString(1, tabla);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : null;
+                }
+            }
+        }
+
+        private Long iniciar(Connection connection) throws SQLException {
+            long inicial;
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "SELECT COALESCE(MAX(id), 0) + 1 FROM " + tabla)) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    inicial = rs.getLong(1);
+                }
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO id_bloques (tabla, siguiente) VALUES (?, ?)")) {
+                ps.setString(1, tabla);
+                ps.setLong(2, inicial);
+                ps.executeUpdate();
+            } catch (SQLException e) {
+                // Otra instancia creó la fila al mismo tiempo
+                Long actual = leerParaActualizar(connection);
+                if (actual == null) {
+                    throw e;
+                }
+                return actual;
+            }
+            return inicial;
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.skadi.backend.repositories;
 
 import com.skadi.backend.entities.AjusteInventario;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -14,4 +18,22 @@ public interface AjusteInventarioRepository extends JpaRepository<AjusteInventar
     List<AjusteInventario> findByAlmacenId(Long almacenId);
 
     List<AjusteInventario> findByVarianteId(Long varianteId);
+
+    // Página ordenada por (fecha, id) descendente con los datos que muestra el listado
+    @Query("SELECT a FROM AjusteInventario a JOIN FETCH a.almacen JOIN FETCH a.variante LEFT JOIN FETCH a.lote " +
+            "WHERE a.empresa.id = :empresaId " +
+            "AND (:almacenId IS NULL OR a.almacen.id = :almacenId) " +
+            "AND (:varianteId IS NULL OR a.variante.id = :varianteId) " +
+            "AND (:desde IS NULL OR a.fecha >= :desde) " +
+            "AND (:hasta IS NULL OR a.fecha <= :hasta) " +
+            "AND (:cursorFecha IS NULL OR a.fecha < :cursorFecha OR (a.fecha = :cursorFecha AND a.id < :cursorId)) " +
+            "ORDER BY a.fecha DESC, a.id DESC")
+    List<AjusteInventario> findPagina(@Param("empresaId") Long empresaId,
+            @Param("almacenId") Long almacenId,
+            @Param("varianteId") Long varianteId,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta,
+            @Param("cursorFecha") LocalDateTime cursorFecha,
+            @Param("cursorId") Long cursorId,
+            Limit limit);
 }
@@ -2,6 +2,8 @@ package com.skadi.backend.repositories;
 
 import com.skadi.backend.entities.Almacen;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -15,4 +17,7 @@ public interface AlmacenRepository extends JpaRepository<Almacen, Long> {
     Optional<Almacen> findByIdAndEmpresaId(Long id, Long empresaId);
 
     List<Almacen> findByEmpresaIdAndEstado(Long empresaId, String estado);
+
+    @Query("SELECT a.empresa.id FROM Almacen a WHERE a.id = :id")
+    Optional<Long> findEmpresaIdById(@Param("id") Long id);
 }
@@ -0,0 +1,38 @@
+package com.skadi.backend.repositories;
+
+import com.skadi.backend.entities.CambioSincronizacion;
+import com.skadi.backend.entities.CambioSincronizacionId;
+import com.skadi.backend.entities.EntidadSincronizacion;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CambioSincronizacionRepository extends JpaRepository<CambioSincronizacion, CambioSincronizacionId> {
+
+    // Cambios posteriores a una versión, en orden (idx_sincronizacion_empresa_version)
+    @Query("SELECT c FROM CambioSincronizacion c WHERE c.id.empresaId = :empresaId AND c.version > :version " +
+            "ORDER BY c.version, c.id.entidad, c.id.entidadId")
+    List<CambioSincronizacion> findDesde(@Param("empresaId") Long empresaId,
+            @Param("version") Long version,
+            Limit limit);
+
+    // Cambios de ciertas entidades posteriores a una versión (idx_sincronizacion_empresa_version)
+    @Query("SELECT c FROM CambioSincronizacion c WHERE c.id.empresaId = :empresaId AND c.version > :version " +
+            "AND c.id.entidad IN :entidades")
+    List<CambioSincronizacion> findDesdeByEntidadIn(@Param("empresaId") Long empresaId,
+            @Param("version") Long version,
+            @Param("entidades") Collection<EntidadSincronizacion> entidades,
+            Limit limit);
+
+    // Todos los cambios de una versión, para entregarla completa aunque supere el límite
+    @Query("SELECT c FROM CambioSincronizacion c WHERE c.id.empresaId = :empresaId AND c.version = :version " +
+            "ORDER BY c.id.entidad, c.id.entidadId")
+    List<CambioSincronizacion> findByVersion(@Param("empresaId") Long empresaId,
+            @Param("version") Long version);
+}
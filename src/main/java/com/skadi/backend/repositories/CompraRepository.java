@@ -1,10 +1,14 @@
 package com.skadi.backend.repositories;
 
 import com.skadi.backend.entities.Compra;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,4 +22,27 @@ public interface CompraRepository extends JpaRepository<Compra, Long> {
     List<Compra> findByEmpresaIdAndFechaBetween(Long empresaId, LocalDateTime desde, LocalDateTime hasta);
 
     List<Compra> findByAlmacenId(Long almacenId);
+
+    // Ids de una página ordenada por (fecha, id) descendente; el cursor es la clave de la
+    // última fila de la página anterior. Usa los índices (empresa_id, fecha, id) y (almacen_id, fecha, id)
+    @Query("SELECT c.id FROM Compra c WHERE c.empresa.id = :empresaId " +
+            "AND (:almacenId IS NULL OR c.almacen.id = :almacenId) " +
+            "AND (:desde IS NULL OR c.fecha >= :desde) " +
+            "AND (:hasta IS NULL OR c.fecha <= :hasta) " +
+            "AND (:proveedor IS NULL OR LOWER(c.proveedor) LIKE LOWER(CONCAT('%', :proveedor, '%'))) " +
+            "AND (:numeroDocumento IS NULL OR c.numeroDocumento = :numeroDocumento) " +
+            "AND (:cursorFecha IS NULL OR c.fecha < :cursorFecha OR (c.fecha = :cursorFecha AND c.id < :cursorId)) " +
+            "ORDER BY c.fecha DESC, c.id DESC")
+    List<Long> findIdsPagina(@Param("empresaId") Long empresaId,
+            @Param("almacenId") Long almacenId,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta,
+            @Param("proveedor") String proveedor,
+            @Param("numeroDocumento") String numeroDocumento,
+            @Param("cursorFecha") LocalDateTime cursorFecha,
+            @Param("cursorId") Long cursorId,
+            Limit limit);
+
+    @Query("SELECT DISTINCT c FROM Compra c LEFT JOIN FETCH c.detalles WHERE c.id IN :ids")
+    List<Compra> findAllWithDetallesByIdIn(@Param("ids") Collection<Long> ids);
 }
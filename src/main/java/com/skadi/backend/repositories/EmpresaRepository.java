@@ -2,8 +2,14 @@ package com.skadi.backend.repositories;
 
 import com.skadi.backend.entities.Empresa;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface EmpresaRepository extends JpaRepository<Empresa, Long> {
+
+    @Query("SELECT e.id FROM Empresa e ORDER BY e.id")
+    List<Long> findAllIds();
 }
@@ -1,53 +1,91 @@
 package com.skadi.backend.repositories;
 
+import com.skadi.backend.dto.KardexMovimientoDTO;
 import com.skadi.backend.entities.KardexMovimiento;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface KardexMovimientoRepository extends JpaRepository<KardexMovimiento, Long> {
 
-    List<KardexMovimiento> findByEmpresaId(Long empresaId);
+    String PROYECCION_MOVIMIENTO = "SELECT new com.skadi.backend.dto.KardexMovimientoDTO(k.id, k.secuencia, a.id, a.nombre, " +
+            "v.id, v.nombre, l.id, l.codigoLote, k.fecha, k.tipo, k.cantidad, k.costoUnitario, k.costoTotal, " +
+            "k.saldoCantidad, k.saldoCostoUnitario, k.saldoCostoTotal, k.referencia) " +
+            "FROM KardexMovimiento k JOIN Almacen a ON a.id = k.almacen.id " +
+            "JOIN ProductoVariante v ON v.id = k.variante.id LEFT JOIN Lote l ON l.id = k.lote.id ";
 
-    List<KardexMovimiento> findByVarianteIdAndAlmacenIdOrderByFechaAsc(Long varianteId, Long almacenId);
+    List<KardexMovimiento> findByEmpresaId(Long empresaId);
 
-    List<KardexMovimiento> findByVarianteIdOrderByFechaAsc(Long varianteId);
+    List<KardexMovimiento> findByVarianteIdAndAlmacenIdOrderBySecuenciaAsc(Long varianteId, Long almacenId);
 
-    @Query("SELECT k FROM KardexMovimiento k WHERE k.empresa.id = :empresaId " +
+    // Kardex de (almacén, variante) en orden de secuencia, desde la secuencia del cursor
+    @Query(PROYECCION_MOVIMIENTO + "WHERE k.empresa.id = :empresaId " +
             "AND k.variante.id = :varianteId AND k.almacen.id = :almacenId " +
-            "ORDER BY k.fecha ASC")
-    List<KardexMovimiento> findKardex(@Param("empresaId") Long empresaId,
+            "AND (:despuesDe IS NULL OR k.secuencia > :despuesDe) " +
+            "ORDER BY k.secuencia ASC")
+    List<KardexMovimientoDTO> findKardex(@Param("empresaId") Long empresaId,
             @Param("varianteId") Long varianteId,
-            @Param("almacenId") Long almacenId);
+            @Param("almacenId") Long almacenId,
+            @Param("despuesDe") Long despuesDe,
+            Limit limit);
 
-    @Query("SELECT k FROM KardexMovimiento k WHERE k.empresa.id = :empresaId " +
-            "AND k.variante.id = :varianteId AND k.almacen.id = :almacenId " +
-            "AND k.lote.id = :loteId ORDER BY k.fecha ASC")
-    List<KardexMovimiento> findKardexByLote(@Param("empresaId") Long empresaId,
+    @Query(PROYECCION_MOVIMIENTO + "WHERE k.empresa.id = :empresaId " +
+            "AND k.variante.id = :varianteId AND k.almacen.id = :almacenId AND k.lote.id = :loteId " +
+            "AND (:despuesDe IS NULL OR k.secuencia > :despuesDe) " +
+            "ORDER BY k.secuencia ASC")
+    List<KardexMovimientoDTO> findKardexByLote(@Param("empresaId") Long empresaId,
             @Param("varianteId") Long varianteId,
             @Param("almacenId") Long almacenId,
-            @Param("loteId") Long loteId);
+            @Param("loteId") Long loteId,
+            @Param("despuesDe") Long despuesDe,
+            Limit limit);
 
-    @Query("SELECT k FROM KardexMovimiento k WHERE k.empresa.id = :empresaId " +
-            "AND k.fecha BETWEEN :desde AND :hasta ORDER BY k.fecha ASC")
-    List<KardexMovimiento> findByEmpresaIdAndFechaBetween(@Param("empresaId") Long empresaId,
+    @Query(PROYECCION_MOVIMIENTO + "WHERE k.empresa.id = :empresaId " +
+            "AND k.fecha BETWEEN :desde AND :hasta ORDER BY k.fecha ASC, k.id ASC")
+    List<KardexMovimientoDTO> findByEmpresaIdAndFechaBetween(@Param("empresaId") Long empresaId,
             @Param("desde") LocalDateTime desde,
             @Param("hasta") LocalDateTime hasta);
 
     @Query("SELECT k FROM KardexMovimiento k WHERE k.variante.id = :varianteId " +
-            "AND k.almacen.id = :almacenId ORDER BY k.fecha DESC LIMIT 1")
+            "AND k.almacen.id = :almacenId ORDER BY k.secuencia DESC LIMIT 1")
     Optional<KardexMovimiento> findLastMovimiento(@Param("varianteId") Long varianteId,
             @Param("almacenId") Long almacenId);
 
     @Query("SELECT k FROM KardexMovimiento k WHERE k.variante.id = :varianteId " +
-            "AND k.almacen.id = :almacenId AND k.lote.id = :loteId ORDER BY k.fecha DESC LIMIT 1")
+            "AND k.almacen.id = :almacenId AND k.lote.id = :loteId ORDER BY k.secuencia DESC LIMIT 1")
     Optional<KardexMovimiento> findLastMovimientoByLote(@Param("varianteId") Long varianteId,
             @Param("almacenId") Long almacenId,
             @Param("loteId") Long loteId);
+
+    // Último movimiento de cada lote (incluido el stock sin lote) de una variante en un almacén
+    @Query(value = "SELECT k.* FROM kardex_movimientos k JOIN (SELECT MAX(secuencia) AS secuencia " +
+            "FROM kardex_movimientos WHERE variante_id = :varianteId AND almacen_id = :almacenId GROUP BY lote_id) u " +
+            "ON k.variante_id = :varianteId AND k.almacen_id = :almacenId AND k.secuencia = u.secuencia",
+            nativeQuery = true)
+    List<KardexMovimiento> findUltimosMovimientosPorLote(@Param("varianteId") Long varianteId,
+            @Param("almacenId") Long almacenId);
+
+    // Exportación: proyección plana leída fila por fila. Con MySQL, fetch size Integer.MIN_VALUE
+    // hace que el driver entregue el resultado en streaming en lugar de cargarlo completo.
+    // Debe consumirse dentro de una transacción y cerrarse al terminar.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(PROYECCION_MOVIMIENTO + "WHERE k.empresa.id = :empresaId AND k.fecha BETWEEN :desde AND :hasta " +
+            "ORDER BY k.fecha ASC, k.id ASC")
+    Stream<KardexMovimientoDTO> streamMovimientos(@Param("empresaId") Long empresaId,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta);
 }
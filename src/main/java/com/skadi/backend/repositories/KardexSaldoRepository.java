@@ -0,0 +1,36 @@
+package com.skadi.backend.repositories;
+
+import com.skadi.backend.entities.KardexSaldo;
+import com.skadi.backend.entities.KardexSaldoId;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+@Repository
+public interface KardexSaldoRepository extends JpaRepository<KardexSaldo, KardexSaldoId> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM KardexSaldo s WHERE s.id = :id")
+    Optional<KardexSaldo> findForUpdate(@Param("id") KardexSaldoId id);
+
+    // Crea el saldo si no existe; si otra transacción lo creó antes no modifica nada
+    @Modifying
+    @Query(value = "INSERT INTO kardex_saldos (empresa_id, almacen_id, variante_id, lote_id, " +
+            "saldo_cantidad, saldo_costo_unitario, secuencia, updated_at) " +
+            "VALUES (:empresaId, :almacenId, :varianteId, :loteId, :saldoCantidad, :saldoCostoUnitario, :secuencia, NOW()) " +
+            "ON DUPLICATE KEY UPDATE secuencia = secuencia", nativeQuery = true)
+    int insertIfAbsent(@Param("empresaId") Long empresaId,
+            @Param("almacenId") Long almacenId,
+            @Param("varianteId") Long varianteId,
+            @Param("loteId") Long loteId,
+            @Param("saldoCantidad") Integer saldoCantidad,
+            @Param("saldoCostoUnitario") BigDecimal saldoCostoUnitario,
+            @Param("secuencia") Long secuencia);
+}
@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,9 +18,12 @@ public interface LoteRepository extends JpaRepository<Lote, Long> {
 
     Optional<Lote> findByIdAndVarianteId(Long id, Long varianteId);
 
+    Optional<Lote> findByIdAndEmpresaId(Long id, Long empresaId);
+
+    List<Lote> findByIdInAndEmpresaId(Collection<Long> ids, Long empresaId);
+
     Optional<Lote> findByCodigoLoteAndVarianteId(String codigoLote, Long varianteId);
 
-    @Query("SELECT l FROM Lote l JOIN l.variante v JOIN v.producto p " +
-            "WHERE p.empresa.id = :empresaId AND l.fechaVencimiento <= :fecha")
+    @Query("SELECT l FROM Lote l WHERE l.empresa.id = :empresaId AND l.fechaVencimiento <= :fecha")
     List<Lote> findLotesPorVencer(@Param("empresaId") Long empresaId, @Param("fecha") LocalDate fecha);
 }
@@ -1,9 +1,13 @@
 package com.skadi.backend.repositories;
 
 import com.skadi.backend.entities.Producto;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,7 +18,30 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
 
     Optional<Producto> findByIdAndEmpresaId(Long id, Long empresaId);
 
+    List<Producto> findByIdInAndEmpresaId(Collection<Long> ids, Long empresaId);
+
     List<Producto> findByEmpresaIdAndEstado(Long empresaId, String estado);
 
     boolean existsByCodigoAndEmpresaId(String codigo, Long empresaId);
+
+    // Ids de una página ordenada por id (índice de empresa_id)
+    @Query("SELECT p.id FROM Producto p WHERE p.empresa.id = :empresaId " +
+            "AND (:categoria IS NULL OR p.categoria = :categoria) " +
+            "AND (:estado IS NULL OR p.estado = :estado) " +
+            "AND (:texto IS NULL OR LOWER(p.nombre) LIKE LOWER(CONCAT('%', :texto, '%')) " +
+            "OR LOWER(p.codigo) LIKE LOWER(CONCAT('%', :texto, '%'))) " +
+            "AND (:cursorId IS NULL OR p.id > :cursorId) " +
+            "ORDER BY p.id")
+    List<Long> findIdsPagina(@Param("empresaId") Long empresaId,
+            @Param("categoria") String categoria,
+            @Param("estado") String estado,
+            @Param("texto") String texto,
+            @Param("cursorId") Long cursorId,
+            Limit limit);
+
+    @Query("SELECT DISTINCT p FROM Producto p LEFT JOIN FETCH p.variantes WHERE p.empresa.id = :empresaId")
+    List<Producto> findAllWithVariantesByEmpresaId(@Param("empresaId") Long empresaId);
+
+    @Query("SELECT DISTINCT p FROM Producto p LEFT JOIN FETCH p.variantes WHERE p.id IN :ids")
+    List<Producto> findAllWithVariantesByIdIn(@Param("ids") Collection<Long> ids);
 }
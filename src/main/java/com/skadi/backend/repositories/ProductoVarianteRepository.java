@@ -2,8 +2,11 @@ package com.skadi.backend.repositories;
 
 import com.skadi.backend.entities.ProductoVariante;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,7 +17,21 @@ public interface ProductoVarianteRepository extends JpaRepository<ProductoVarian
 
     Optional<ProductoVariante> findByIdAndProductoId(Long id, Long productoId);
 
-    Optional<ProductoVariante> findBySku(String sku);
+    Optional<ProductoVariante> findByIdAndEmpresaId(Long id, Long empresaId);
 
-    boolean existsBySku(String sku);
+    boolean existsBySkuAndEmpresaId(String sku, Long empresaId);
+
+    boolean existsBySkuAndEmpresaIdAndIdNot(String sku, Long empresaId, Long id);
+
+    // Consulta explícita: la derivada une empresas con LEFT JOIN y no usa idx_variantes_empresa
+    @Query("SELECT COUNT(v) FROM ProductoVariante v WHERE v.empresa.id = :empresaId")
+    long countByEmpresaId(@Param("empresaId") Long empresaId);
+
+    @Query("SELECT v FROM ProductoVariante v JOIN FETCH v.producto WHERE v.id IN :ids AND v.empresa.id = :empresaId")
+    List<ProductoVariante> findAllWithProductoByIdIn(@Param("ids") Collection<Long> ids,
+            @Param("empresaId") Long empresaId);
+
+    @Query("SELECT v FROM ProductoVariante v JOIN FETCH v.producto WHERE v.sku IN :skus AND v.empresa.id = :empresaId")
+    List<ProductoVariante> findAllWithProductoBySkuIn(@Param("skus") Collection<String> skus,
+            @Param("empresaId") Long empresaId);
 }
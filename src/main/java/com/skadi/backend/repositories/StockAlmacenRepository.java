@@ -1,17 +1,34 @@
 package com.skadi.backend.repositories;
 
+import com.skadi.backend.dto.DisponibilidadDTO;
+import com.skadi.backend.dto.StockBajoDTO;
+import com.skadi.backend.dto.StockDTO;
+import com.skadi.backend.dto.StockEventoDTO;
+import com.skadi.backend.dto.ValorizacionGrupoDTO;
 import com.skadi.backend.entities.StockAlmacen;
+import com.skadi.backend.services.AsignadorLotes;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface StockAlmacenRepository extends JpaRepository<StockAlmacen, Long> {
 
+        String PROYECCION_STOCK = "SELECT new com.skadi.backend.dto.StockDTO(s.id, a.id, a.nombre, v.id, v.nombre, "
+                        + "p.nombre, v.sku, l.id, l.codigoLote, s.stock, s.costoPromedio) "
+                        + "FROM StockAlmacen s JOIN s.almacen a JOIN s.variante v JOIN v.producto p "
+                        + "LEFT JOIN s.lote l ";
+
         List<StockAlmacen> findByEmpresaId(Long empresaId);
 
         List<StockAlmacen> findByAlmacenId(Long almacenId);
@@ -33,13 +50,138 @@ public interface StockAlmacenRepository extends JpaRepository<StockAlmacen, Long
         @Query("SELECT s FROM StockAlmacen s WHERE s.lote.id = :loteId ORDER BY s.lote.fechaVencimiento ASC")
         List<StockAlmacen> findByLoteIdOrderByFechaVencimiento(@Param("loteId") Long loteId);
 
-        @Query("SELECT s FROM StockAlmacen s LEFT JOIN s.lote l WHERE s.almacen.id = :almacenId AND s.variante.id = :varianteId AND s.stock > 0 ORDER BY CASE WHEN l.fechaVencimiento IS NULL THEN 1 ELSE 0 END, l.fechaVencimiento ASC")
-        List<StockAlmacen> findAvailableStockFIFO(@Param("almacenId") Long almacenId,
-                        @Param("varianteId") Long varianteId);
+        // Filas con existencias de las variantes para armar las colas FEFO de AsignadorLotes;
+        // el orden se calcula en memoria
+        @Query("SELECT new com.skadi.backend.services.AsignadorLotes$LoteEnCola(s.id, s.variante.id, l.id, "
+                        + "l.fechaVencimiento) FROM StockAlmacen s LEFT JOIN s.lote l "
+                        + "WHERE s.almacen.id = :almacenId AND s.variante.id IN :varianteIds AND s.stock > 0")
+        List<AsignadorLotes.LoteEnCola> findColaFEFO(@Param("almacenId") Long almacenId,
+                        @Param("varianteIds") Collection<Long> varianteIds);
 
-        // FIFO solo con lotes (excluye stock sin lote) - para productos que requieren
-        // lote
-        @Query("SELECT s FROM StockAlmacen s JOIN s.lote l WHERE s.almacen.id = :almacenId AND s.variante.id = :varianteId AND s.stock > 0 ORDER BY l.fechaVencimiento ASC NULLS LAST")
-        List<StockAlmacen> findAvailableStockWithLoteFIFO(@Param("almacenId") Long almacenId,
-                        @Param("varianteId") Long varianteId);
+        // Filas de stock que cambiaron, para la sincronización
+        @Query(PROYECCION_STOCK + "WHERE s.id IN :ids AND s.empresa.id = :empresaId")
+        List<StockDTO> findAllDTOByIdIn(@Param("ids") Collection<Long> ids, @Param("empresaId") Long empresaId);
+
+        // Lectura sin bloqueo de las filas de las colas (cotizaciones)
+        @Query("SELECT s FROM StockAlmacen s LEFT JOIN FETCH s.lote WHERE s.id IN :ids")
+        List<StockAlmacen> findAllWithLoteByIdIn(@Param("ids") Collection<Long> ids);
+
+        // Bloquea las filas en orden de id: dos ventas con las mismas variantes toman los
+        // bloqueos en la misma secuencia y una espera a la otra en lugar de formar un ciclo
+        @Lock(LockModeType.PESSIMISTIC_WRITE)
+        @Query("SELECT s FROM StockAlmacen s WHERE s.id IN :ids ORDER BY s.id")
+        List<StockAlmacen> findAllForUpdateByIdIn(@Param("ids") Collection<Long> ids);
+
+        // Fila que creó o actualizó upsertEntrada, con su stock ya sumado (uk_stock_almacen_variante_lote);
+        // la secuencia la completa quien registra el movimiento del kardex
+        @Query("SELECT new com.skadi.backend.dto.StockEventoDTO(s.id, s.almacen.id, s.variante.id, s.lote.id, s.stock, 0L) "
+                        + "FROM StockAlmacen s WHERE s.almacen.id = :almacenId AND s.variante.id = :varianteId AND s.loteClave = :loteClave")
+        Optional<StockEventoDTO> findEventoByClave(@Param("almacenId") Long almacenId,
+                        @Param("varianteId") Long varianteId,
+                        @Param("loteClave") Long loteClave);
+
+        @Lock(LockModeType.PESSIMISTIC_WRITE)
+        @Query("SELECT s FROM StockAlmacen s WHERE s.almacen.id = :almacenId AND s.variante.id = :varianteId AND s.loteClave = :loteClave")
+        Optional<StockAlmacen> findForUpdate(@Param("almacenId") Long almacenId,
+                        @Param("varianteId") Long varianteId,
+                        @Param("loteClave") Long loteClave);
+
+        // Entrada de stock en una sola sentencia: crea la fila o suma la cantidad
+        // recalculando el costo promedio ponderado con el stock anterior
+        @Modifying
+        @Query(value = "INSERT INTO stock_almacen (empresa_id, almacen_id, variante_id, lote_id, stock, costo_promedio) "
+                        + "VALUES (:empresaId, :almacenId, :varianteId, :loteId, :cantidad, :costoUnitario) "
+                        + "ON DUPLICATE KEY UPDATE "
+                        + "costo_promedio = CASE WHEN stock + :cantidad > 0 "
+                        + "THEN ROUND((costo_promedio * stock + :costoUnitario * :cantidad) / (stock + :cantidad), 2) "
+                        + "ELSE 0 END, "
+                        + "stock = stock + :cantidad", nativeQuery = true)
+        int upsertEntrada(@Param("empresaId") Long empresaId,
+                        @Param("almacenId") Long almacenId,
+                        @Param("varianteId") Long varianteId,
+                        @Param("loteId") Long loteId,
+                        @Param("cantidad") Integer cantidad,
+                        @Param("costoUnitario") BigDecimal costoUnitario);
+
+        // Crea la fila con stock 0 si no existe; no modifica una fila existente
+        @Modifying
+        @Query(value = "INSERT INTO stock_almacen (empresa_id, almacen_id, variante_id, lote_id, stock, costo_promedio) "
+                        + "VALUES (:empresaId, :almacenId, :varianteId, :loteId, 0, 0) "
+                        + "ON DUPLICATE KEY UPDATE stock = stock", nativeQuery = true)
+        int insertIfAbsent(@Param("empresaId") Long empresaId,
+                        @Param("almacenId") Long almacenId,
+                        @Param("varianteId") Long varianteId,
+                        @Param("loteId") Long loteId);
+
+        // Descuento atómico: retorna 0 si el stock ya no alcanza
+        @Modifying
+        @Query(value = "UPDATE stock_almacen SET stock = stock - :cantidad WHERE id = :id AND stock >= :cantidad", nativeQuery = true)
+        int descontarStock(@Param("id") Long id, @Param("cantidad") Integer cantidad);
+
+        @Modifying
+        @Query(value = "UPDATE stock_almacen SET stock = :stock WHERE id = :id", nativeQuery = true)
+        int actualizarStock(@Param("id") Long id, @Param("stock") Integer stock);
+
+        // Página ordenada por id, proyectada directamente a StockDTO en una sola consulta
+        @Query(PROYECCION_STOCK + "WHERE s.empresa.id = :empresaId "
+                        + "AND (:almacenId IS NULL OR a.id = :almacenId) "
+                        + "AND (:varianteId IS NULL OR v.id = :varianteId) "
+                        + "AND (:cursorId IS NULL OR s.id > :cursorId) "
+                        + "ORDER BY s.id")
+        List<StockDTO> findPagina(@Param("empresaId") Long empresaId,
+                        @Param("almacenId") Long almacenId,
+                        @Param("varianteId") Long varianteId,
+                        @Param("cursorId") Long cursorId,
+                        Limit limit);
+
+        @Query(PROYECCION_STOCK + "WHERE s.empresa.id = :empresaId ORDER BY s.id")
+        List<StockDTO> findStockByEmpresaId(@Param("empresaId") Long empresaId);
+
+        // Stock de cada variante con umbrales, sumando sus lotes por almacén, que llegó al punto
+        // de reorden o quedó debajo del mínimo. Parte de cada variante con umbrales por cada
+        // almacén de la empresa, así que una variante que nunca tuvo stock en un almacén aparece
+        // con stock 0; la suma se resuelve con idx_stock_variante_almacen. Sin almacén pedido
+        // solo se consideran los activos.
+        @Query("SELECT new com.skadi.backend.dto.StockBajoDTO(a.id, a.nombre, v.id, v.nombre, p.nombre, v.sku, "
+                        + "COALESCE(SUM(s.stock), 0L), v.stockMinimo, v.puntoReorden) "
+                        + "FROM ProductoVariante v JOIN v.producto p "
+                        + "JOIN Almacen a ON a.empresa.id = v.empresa.id "
+                        + "LEFT JOIN StockAlmacen s ON s.variante.id = v.id AND s.almacen.id = a.id "
+                        + "WHERE v.empresa.id = :empresaId "
+                        + "AND (v.stockMinimo IS NOT NULL OR v.puntoReorden IS NOT NULL) "
+                        + "AND (a.id = :almacenId OR (:almacenId IS NULL AND a.estado = 'activo')) "
+                        + "GROUP BY a.id, a.nombre, v.id, v.nombre, p.nombre, v.sku, v.stockMinimo, v.puntoReorden "
+                        + "HAVING COALESCE(SUM(s.stock), 0) < v.stockMinimo OR COALESCE(SUM(s.stock), 0) <= v.puntoReorden "
+                        + "ORDER BY a.nombre, p.nombre, v.nombre")
+        List<StockBajoDTO> findStockBajo(@Param("empresaId") Long empresaId,
+                        @Param("almacenId") Long almacenId);
+
+        // Stock por variante y almacén sumando lotes, solo donde hay existencias. Igual que
+        // findStockBajo, la empresa se filtra por las variantes y la suma sale de
+        // idx_stock_variante_almacen
+        @Query("SELECT new com.skadi.backend.dto.DisponibilidadDTO(v.id, s.almacen.id, SUM(s.stock)) "
+                        + "FROM ProductoVariante v JOIN StockAlmacen s ON s.variante = v "
+                        + "WHERE v.empresa.id = :empresaId AND v.id IN :varianteIds "
+                        + "AND (:almacenId IS NULL OR s.almacen.id = :almacenId) "
+                        + "GROUP BY v.id, s.almacen.id HAVING SUM(s.stock) > 0 "
+                        + "ORDER BY v.id, s.almacen.id")
+        List<DisponibilidadDTO> findDisponibilidad(@Param("empresaId") Long empresaId,
+                        @Param("varianteIds") Collection<Long> varianteIds,
+                        @Param("almacenId") Long almacenId);
+
+        // Valorización agregada en la base de datos: una fila por grupo
+        @Query("SELECT new com.skadi.backend.dto.ValorizacionGrupoDTO(a.id, a.nombre, SUM(s.stock), "
+                        + "SUM(s.costoPromedio * s.stock)) FROM StockAlmacen s JOIN s.almacen a "
+                        + "WHERE s.empresa.id = :empresaId GROUP BY a.id, a.nombre ORDER BY a.nombre, a.id")
+        List<ValorizacionGrupoDTO> valorizarPorAlmacen(@Param("empresaId") Long empresaId);
+
+        @Query("SELECT new com.skadi.backend.dto.ValorizacionGrupoDTO(p.categoria, SUM(s.stock), "
+                        + "SUM(s.costoPromedio * s.stock)) FROM StockAlmacen s JOIN s.variante v JOIN v.producto p "
+                        + "WHERE s.empresa.id = :empresaId GROUP BY p.categoria ORDER BY p.categoria")
+        List<ValorizacionGrupoDTO> valorizarPorCategoria(@Param("empresaId") Long empresaId);
+
+        @Query("SELECT new com.skadi.backend.dto.ValorizacionGrupoDTO(p.id, p.nombre, SUM(s.stock), "
+                        + "SUM(s.costoPromedio * s.stock)) FROM StockAlmacen s JOIN s.variante v JOIN v.producto p "
+                        + "WHERE s.empresa.id = :empresaId GROUP BY p.id, p.nombre ORDER BY p.nombre, p.id")
+        List<ValorizacionGrupoDTO> valorizarPorProducto(@Param("empresaId") Long empresaId);
 }
@@ -1,10 +1,14 @@
 package com.skadi.backend.repositories;
 
 import com.skadi.backend.entities.Venta;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,4 +22,27 @@ public interface VentaRepository extends JpaRepository<Venta, Long> {
     List<Venta> findByEmpresaIdAndFechaBetween(Long empresaId, LocalDateTime desde, LocalDateTime hasta);
 
     List<Venta> findByAlmacenId(Long almacenId);
+
+    // Ids de una página ordenada por (fecha, id) descendente; el cursor es la clave de la
+    // última fila de la página anterior. Usa los índices (empresa_id, fecha, id) y (almacen_id, fecha, id)
+    @Query("SELECT v.id FROM Venta v WHERE v.empresa.id = :empresaId " +
+            "AND (:almacenId IS NULL OR v.almacen.id = :almacenId) " +
+            "AND (:desde IS NULL OR v.fecha >= :desde) " +
+            "AND (:hasta IS NULL OR v.fecha <= :hasta) " +
+            "AND (:cliente IS NULL OR LOWER(v.cliente) LIKE LOWER(CONCAT('%', :cliente, '%'))) " +
+            "AND (:numeroDocumento IS NULL OR v.numeroDocumento = :numeroDocumento) " +
+            "AND (:cursorFecha IS NULL OR v.fecha < :cursorFecha OR (v.fecha = :cursorFecha AND v.id < :cursorId)) " +
+            "ORDER BY v.fecha DESC, v.id DESC")
+    List<Long> findIdsPagina(@Param("empresaId") Long empresaId,
+            @Param("almacenId") Long almacenId,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta,
+            @Param("cliente") String cliente,
+            @Param("numeroDocumento") String numeroDocumento,
+            @Param("cursorFecha") LocalDateTime cursorFecha,
+            @Param("cursorId") Long cursorId,
+            Limit limit);
+
+    @Query("SELECT DISTINCT v FROM Venta v LEFT JOIN FETCH v.detalles WHERE v.id IN :ids")
+    List<Venta> findAllWithDetallesByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,21 @@
+package com.skadi.backend.repositories;
+
+import com.skadi.backend.entities.VersionSincronizacion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface VersionSincronizacionRepository extends JpaRepository<VersionSincronizacion, Long> {
+
+    // Suma uno al contador (o lo crea) y deja la fila bloqueada hasta el fin de la transacción
+    @Modifying
+    @Query(value = "INSERT INTO sincronizacion_versiones (empresa_id, version) VALUES (:empresaId, 1) " +
+            "ON DUPLICATE KEY UPDATE version = version + 1", nativeQuery = true)
+    int incrementar(@Param("empresaId") Long empresaId);
+
+    @Query(value = "SELECT version FROM sincronizacion_versiones WHERE empresa_id = :empresaId", nativeQuery = true)
+    Long findVersion(@Param("empresaId") Long empresaId);
+}
@@ -6,10 +6,10 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -22,6 +22,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UsuarioRepository usuarioRepository;
+    private final RevocacionTokens revocacionTokens;
+
+    // Modo solo-claims: el principal se arma desde el token sin consultar la base de datos
+    @Value("${jwt.claims-only:false}")
+    private boolean soloClaims;
 
     @Override
     protected void doFilterInternal(
@@ -30,7 +35,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             @NonNull FilterChain filterChain) throws ServletException, IOException {
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
-        final String username;
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             filterChain.doFilter(request, response);
@@ -40,19 +44,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         jwt = authHeader.substring(7);
 
         try {
-            username = jwtService.extractUsername(jwt);
+            // Una sola verificación (o ninguna, si el token está en caché) por request
+            TokenVerificado token = jwtService.verificar(jwt);
 
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = usuarioRepository.findByUsername(username).orElse(null);
+            if (token.username() != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                UsuarioPrincipal principal = autenticar(token);
 
-                if (userDetails != null && jwtService.isTokenValid(jwt, userDetails)) {
-                    Long empresaId = jwtService.extractEmpresaId(jwt);
-                    TenantContext.setCurrentTenant(empresaId);
+                if (principal != null) {
+                    TenantContext.setCurrentTenant(principal.empresaId());
 
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails,
+                            principal,
                             null,
-                            userDetails.getAuthorities());
+                            principal.getAuthorities());
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authToken);
                 }
@@ -68,4 +72,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             TenantContext.clear();
         }
     }
+
+    private UsuarioPrincipal autenticar(TokenVerificado token) {
+        if (soloClaims && token.usuarioId() != null && token.rol() != null) {
+            if (revocacionTokens.isRevocado(token.usuarioId(), token.version())) {
+                return null;
+            }
+            return new UsuarioPrincipal(token.usuarioId(), token.username(), token.empresaId(), token.rol());
+        }
+
+        return usuarioRepository.findByUsername(token.username())
+                .filter(usuario -> usuario.getVersionToken() == token.version())
+                .map(UsuarioPrincipal::desde)
+                .orElse(null);
+    }
 }
@@ -1,18 +1,29 @@
 package com.skadi.backend.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.skadi.backend.entities.Usuario;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
 
 @Service
 public class JwtService {
@@ -23,62 +34,80 @@ public class JwtService {
     @Value("${jwt.expiration}")
     private long jwtExpiration;
 
-    public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+    @Value("${jwt.cache.tamanio-maximo:10000}")
+    private long tamanioMaximoCache;
+
+    private SecretKey signInKey;
+    private JwtParser parser;
+
+    // Tokens ya verificados, indexados por el hash SHA-256 del token; cada entrada
+    // vence junto con el token
+    private Cache<String, TokenVerificado> verificados;
+
+    @PostConstruct
+    void init() {
+        signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        parser = Jwts.parser().verifyWith(signInKey).build();
+        verificados = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximoCache)
+                .expireAfter(Expiry.creating((String hash, TokenVerificado token) -> {
+                    Duration restante = Duration.between(Instant.now(), token.expiracion());
+                    return restante.isNegative() ? Duration.ZERO : restante;
+                }))
+                .build();
     }
 
-    public Long extractEmpresaId(String token) {
-        return extractClaim(token, claims -> claims.get("empresa_id", Long.class));
+    /**
+     * Verifica firma y vigencia del token y devuelve sus datos. La verificación se hace una
+     * sola vez por token; los usos siguientes se resuelven desde la caché.
+     *
+     * @throws JwtException si el token es inválido o está vencido
+     */
+    public TokenVerificado verificar(String token) {
+        String hash = hash(token);
+        TokenVerificado verificado = verificados.getIfPresent(hash);
+        if (verificado != null && verificado.isVigente()) {
+            return verificado;
+        }
+
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        Integer version = claims.get("ver", Integer.class);
+        verificado = new TokenVerificado(
+                claims.getSubject(),
+                claims.get("usuario_id", Long.class),
+                claims.get("empresa_id", Long.class),
+                claims.get("rol", String.class),
+                version != null ? version : 0,
+                claims.getExpiration().toInstant());
+        verificados.put(hash, verificado);
+        return verificado;
     }
 
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
-    }
-
-    public String generateToken(UserDetails userDetails, Long empresaId) {
+    public String generateToken(Usuario usuario, Long empresaId) {
         Map<String, Object> extraClaims = new HashMap<>();
         extraClaims.put("empresa_id", empresaId);
-        return generateToken(extraClaims, userDetails);
-    }
-
-    public String generateToken(Map<String, Object> extraClaims, UserDetails userDetails) {
-        return buildToken(extraClaims, userDetails, jwtExpiration);
+        extraClaims.put("usuario_id", usuario.getId());
+        extraClaims.put("rol", usuario.getRol());
+        extraClaims.put("ver", usuario.getVersionToken());
+        return buildToken(extraClaims, usuario.getUsername(), jwtExpiration);
     }
 
-    private String buildToken(Map<String, Object> extraClaims, UserDetails userDetails, long expiration) {
+    private String buildToken(Map<String, Object> extraClaims, String subject, long expiration) {
         return Jwts.builder()
                 .claims(extraClaims)
-                .subject(userDetails.getUsername())
+                .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignInKey())
+                .signWith(signInKey)
                 .compact();
     }
 
-    public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
-    }
-
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
-
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSignInKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-    }
-
-    private SecretKey getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
     }
 }
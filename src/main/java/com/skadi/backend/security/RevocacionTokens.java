@@ -0,0 +1,57 @@
+package com.skadi.backend.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Versión mínima de token aceptada por usuario, para el modo solo-claims. Cuando cambia el
+ * rol o las credenciales de un usuario, o se elimina, los tokens emitidos con una versión
+ * anterior dejan de aceptarse. Las entradas se descartan pasada la vigencia de un token,
+ * porque para entonces los tokens anteriores ya vencieron.
+ * <p>
+ * Dentro de una transacción la revocación se aplica al confirmar: si se revierte,
+ * {@code version_token} no cambió y los tokens del usuario siguen siendo válidos.
+ */
+@Component
+public class RevocacionTokens {
+
+    private final Cache<Long, Integer> versionesMinimas;
+
+    public RevocacionTokens(@Value("${jwt.expiration}") long jwtExpiration) {
+        this.versionesMinimas = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(jwtExpiration))
+                .build();
+    }
+
+    public void revocar(Long usuarioId, int versionVigente) {
+        alConfirmar(() -> versionesMinimas.asMap().merge(usuarioId, versionVigente, Math::max));
+    }
+
+    public void revocarTodos(Long usuarioId) {
+        revocar(usuarioId, Integer.MAX_VALUE);
+    }
+
+    public boolean isRevocado(Long usuarioId, int version) {
+        Integer minima = versionesMinimas.getIfPresent(usuarioId);
+        return minima != null && version < minima;
+    }
+
+    private void alConfirmar(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,15 @@
+package com.skadi.backend.security;
+
+import java.time.Instant;
+
+/**
+ * Datos de un JWT cuya firma y vigencia ya fueron verificadas. usuarioId y rol pueden ser
+ * null en tokens emitidos antes de incluirlos como claims.
+ */
+public record TokenVerificado(String username, Long usuarioId, Long empresaId, String rol, int version,
+        Instant expiracion) {
+
+    public boolean isVigente() {
+        return expiracion.isAfter(Instant.now());
+    }
+}
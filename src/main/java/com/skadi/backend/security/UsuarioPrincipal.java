@@ -0,0 +1,40 @@
+package com.skadi.backend.security;
+
+import com.skadi.backend.entities.Usuario;
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+
+/**
+ * Usuario autenticado de la request. Se arma desde los claims del token (modo solo-claims)
+ * o desde la entidad Usuario, de modo que los servicios no necesitan volver a consultarla.
+ */
+public record UsuarioPrincipal(Long id, String username, Long empresaId, String rol)
+        implements AuthenticatedPrincipal {
+
+    public static UsuarioPrincipal desde(Usuario usuario) {
+        return new UsuarioPrincipal(usuario.getId(), usuario.getUsername(), usuario.getEmpresa().getId(),
+                usuario.getRol());
+    }
+
+    public static UsuarioPrincipal actual() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UsuarioPrincipal principal)) {
+            throw new IllegalStateException("No hay un usuario autenticado en la request");
+        }
+        return principal;
+    }
+
+    public List<GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + rol.toUpperCase()));
+    }
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
@@ -1,12 +1,15 @@
 package com.skadi.backend.services;
 
 import com.skadi.backend.dto.AjusteDTO;
+import com.skadi.backend.dto.PaginaDTO;
+import com.skadi.backend.dto.StockEventoDTO;
 import com.skadi.backend.entities.*;
 import com.skadi.backend.exceptions.ResourceNotFoundException;
 import com.skadi.backend.repositories.*;
 import com.skadi.backend.security.TenantContext;
+import com.skadi.backend.security.UsuarioPrincipal;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,46 +23,50 @@ import java.util.stream.Collectors;
 public class AjusteService {
 
         private final AjusteInventarioRepository ajusteRepository;
-        private final AlmacenRepository almacenRepository;
+        private final ReferenciaService referenciaService;
         private final ProductoVarianteRepository varianteRepository;
         private final LoteRepository loteRepository;
         private final StockAlmacenRepository stockAlmacenRepository;
         private final KardexMovimientoRepository kardexRepository;
-        private final EmpresaRepository empresaRepository;
-        private final UsuarioRepository usuarioRepository;
-
-        public List<AjusteDTO> findAll() {
+        private final KardexSaldoService kardexSaldoService;
+        private final AsignadorLotes asignadorLotes;
+        private final SincronizacionService sincronizacionService;
+        private final NotificadorStock notificadorStock;
+
+        @Transactional(readOnly = true)
+        public PaginaDTO<AjusteDTO> findAll(Long almacenId, Long varianteId, LocalDateTime desde,
+                        LocalDateTime hasta, String cursor, Integer limite) {
                 Long empresaId = TenantContext.getCurrentTenant();
-                return ajusteRepository.findByEmpresaId(empresaId).stream()
-                                .map(this::toDTO)
-                                .collect(Collectors.toList());
+                int tamanio = Paginacion.limite(limite);
+                Paginacion.CursorFecha desdeCursor = Paginacion.leerCursorFecha(cursor);
+
+                List<AjusteInventario> ajustes = ajusteRepository.findPagina(empresaId, almacenId, varianteId,
+                                desde, hasta, desdeCursor.fecha(), desdeCursor.id(), Limit.of(tamanio + 1));
+                return Paginacion.pagina(ajustes, tamanio, this::toDTO,
+                                ajuste -> Paginacion.cursorFecha(ajuste.getFecha(), ajuste.getId()));
         }
 
         @Transactional
         public AjusteDTO create(AjusteDTO dto) {
                 Long empresaId = TenantContext.getCurrentTenant();
 
-                Empresa empresa = empresaRepository.findById(empresaId)
-                                .orElseThrow(() -> new ResourceNotFoundException("Empresa no encontrada"));
+                Empresa empresa = referenciaService.empresa(empresaId);
 
-                Almacen almacen = almacenRepository.findByIdAndEmpresaId(dto.getAlmacenId(), empresaId)
-                                .orElseThrow(() -> new ResourceNotFoundException("Almacén no encontrado"));
+                Almacen almacen = referenciaService.almacen(empresaId, dto.getAlmacenId());
 
-                ProductoVariante variante = varianteRepository.findById(dto.getVarianteId())
+                ProductoVariante variante = varianteRepository.findByIdAndEmpresaId(dto.getVarianteId(), empresaId)
                                 .orElseThrow(() -> new ResourceNotFoundException("Variante no encontrada"));
 
-                String username = SecurityContextHolder.getContext().getAuthentication().getName();
-                Usuario usuario = usuarioRepository.findByUsername(username)
-                                .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado"));
+                Usuario usuario = referenciaService.usuario(UsuarioPrincipal.actual().id());
 
                 Lote lote = null;
                 if (dto.getLoteId() != null) {
-                        lote = loteRepository.findById(dto.getLoteId())
+                        lote = loteRepository.findByIdAndEmpresaId(dto.getLoteId(), empresaId)
                                         .orElseThrow(() -> new ResourceNotFoundException("Lote no encontrado"));
                 }
 
-                // Obtener stock actual
-                StockAlmacen stock = getOrCreateStock(empresa, almacen, variante, lote);
+                // Obtener stock actual bloqueando la fila hasta el fin de la transacción
+                StockAlmacen stock = getOrCreateStockForUpdate(empresa, almacen, variante, lote);
                 int stockAntes = stock.getStock();
                 int stockDespues = dto.getNuevoStock();
                 int diferencia = stockDespues - stockAntes;
@@ -80,58 +87,47 @@ public class AjusteService {
                 ajuste = ajusteRepository.save(ajuste);
 
                 // Actualizar stock
-                stock.setStock(stockDespues);
-                stockAlmacenRepository.save(stock);
-
-                // Registrar movimiento kardex
-                registrarMovimientoAjuste(empresa, almacen, variante, lote, usuario,
+                stockAlmacenRepository.actualizarStock(stock.getId(), stockDespues);
+                sincronizacionService.registrar(empresaId, EntidadSincronizacion.STOCK, stock.getId());
+                asignadorLotes.actualizar(almacen.getId(), new AsignadorLotes.LoteEnCola(stock.getId(),
+                                variante.getId(), lote != null ? lote.getId() : null,
+                                lote != null ? lote.getFechaVencimiento() : null), stockDespues > 0);
+
+                // Registrar movimiento kardex; sin diferencia no hay movimiento ni cambio que avisar
+                Long secuencia = registrarMovimientoAjuste(empresa, almacen, variante, lote, usuario,
                                 Math.abs(diferencia), stock.getCostoPromedio(), diferencia > 0, dto.getMotivo());
+                if (secuencia != null) {
+                        notificadorStock.publicar(empresaId, List.of(new StockEventoDTO(stock.getId(), almacen.getId(),
+                                        variante.getId(), lote != null ? lote.getId() : null, stockDespues, secuencia)));
+                }
 
                 return toDTO(ajuste);
         }
 
-        private StockAlmacen getOrCreateStock(Empresa empresa, Almacen almacen,
+        private StockAlmacen getOrCreateStockForUpdate(Empresa empresa, Almacen almacen,
                         ProductoVariante variante, Lote lote) {
-                if (lote != null) {
-                        return stockAlmacenRepository.findByAlmacenIdAndVarianteIdAndLoteId(
-                                        almacen.getId(), variante.getId(), lote.getId())
-                                        .orElseGet(() -> stockAlmacenRepository.save(StockAlmacen.builder()
-                                                        .empresa(empresa)
-                                                        .almacen(almacen)
-                                                        .variante(variante)
-                                                        .lote(lote)
-                                                        .stock(0)
-                                                        .costoPromedio(BigDecimal.ZERO)
-                                                        .build()));
-                } else {
-                        return stockAlmacenRepository.findByAlmacenIdAndVarianteIdAndLoteIsNull(
-                                        almacen.getId(), variante.getId())
-                                        .orElseGet(() -> stockAlmacenRepository.save(StockAlmacen.builder()
-                                                        .empresa(empresa)
-                                                        .almacen(almacen)
-                                                        .variante(variante)
-                                                        .stock(0)
-                                                        .costoPromedio(BigDecimal.ZERO)
-                                                        .build()));
-                }
+                Long loteId = lote != null ? lote.getId() : null;
+                stockAlmacenRepository.insertIfAbsent(empresa.getId(), almacen.getId(), variante.getId(), loteId);
+                return stockAlmacenRepository.findForUpdate(almacen.getId(), variante.getId(),
+                                loteId != null ? loteId : 0L)
+                                .orElseThrow(() -> new ResourceNotFoundException("Stock no encontrado"));
         }
 
-        private void registrarMovimientoAjuste(Empresa empresa, Almacen almacen,
+        // Devuelve la secuencia del movimiento, o null si no hubo diferencia
+        private Long registrarMovimientoAjuste(Empresa empresa, Almacen almacen,
                         ProductoVariante variante, Lote lote,
                         Usuario usuario, int cantidad,
                         BigDecimal costoPromedio, boolean esEntrada,
                         String motivo) {
                 if (cantidad == 0)
-                        return;
+                        return null;
 
-                // Obtener último saldo
-                var ultimoMovimiento = lote != null
-                                ? kardexRepository.findLastMovimientoByLote(variante.getId(), almacen.getId(),
-                                                lote.getId())
-                                : kardexRepository.findLastMovimiento(variante.getId(), almacen.getId());
+                // Actualizar saldo vigente
+                KardexSaldoService.SaldoMovimiento saldo = kardexSaldoService.registrarAjuste(empresa.getId(),
+                                almacen.getId(), variante.getId(), lote != null ? lote.getId() : null,
+                                esEntrada ? cantidad : -cantidad, costoPromedio);
 
-                int saldoAnterior = ultimoMovimiento.map(KardexMovimiento::getSaldoCantidad).orElse(0);
-                int nuevoSaldo = esEntrada ? saldoAnterior + cantidad : saldoAnterior - cantidad;
+                int nuevoSaldo = saldo.saldoCantidad();
                 BigDecimal costoTotal = costoPromedio.multiply(BigDecimal.valueOf(cantidad));
                 BigDecimal saldoCostoTotal = costoPromedio.multiply(BigDecimal.valueOf(nuevoSaldo));
 
@@ -142,6 +138,7 @@ public class AjusteService {
                                 .lote(lote)
                                 .usuario(usuario)
                                 .fecha(LocalDateTime.now())
+                                .secuencia(saldo.secuencia())
                                 .tipo("ajuste")
                                 .cantidad(cantidad)
                                 .costoUnitario(costoPromedio)
@@ -153,6 +150,7 @@ public class AjusteService {
                                 .build();
 
                 kardexRepository.save(movimiento);
+                return movimiento.getSecuencia();
         }
 
         private AjusteDTO toDTO(AjusteInventario ajuste) {
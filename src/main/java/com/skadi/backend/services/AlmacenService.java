@@ -20,6 +20,7 @@ public class AlmacenService {
 
     private final AlmacenRepository almacenRepository;
     private final EmpresaRepository empresaRepository;
+    private final ReferenciaService referenciaService;
 
     public List<AlmacenDTO> findAll() {
         Long empresaId = TenantContext.getCurrentTenant();
@@ -65,6 +66,7 @@ public class AlmacenService {
         }
 
         almacen = almacenRepository.save(almacen);
+        referenciaService.invalidarAlmacen(almacen.getId());
         return toDTO(almacen);
     }
 
@@ -74,6 +76,7 @@ public class AlmacenService {
         Almacen almacen = almacenRepository.findByIdAndEmpresaId(id, empresaId)
                 .orElseThrow(() -> new ResourceNotFoundException("Almacén no encontrado"));
         almacenRepository.delete(almacen);
+        referenciaService.invalidarAlmacen(almacen.getId());
     }
 
     private AlmacenDTO toDTO(Almacen almacen) {
@@ -0,0 +1,202 @@
+package com.skadi.backend.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.skadi.backend.repositories.StockAlmacenRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Orden de salida del stock de cada (almacén, variante): primero los lotes que vencen antes
+ * (FEFO) y, sin fecha de vencimiento o sin lote, el stock que ingresó primero (FIFO).
+ * <p>
+ * Las colas se arman desde la base de datos la primera vez que se piden y quedan en caché;
+ * compras y ajustes las actualizan al confirmar su transacción y las ventas retiran las filas
+ * que agotaron. La caché solo da el orden: las cantidades siempre salen de las filas de stock
+ * bloqueadas por la venta, y si con la cola en caché el stock no alcanza, la venta la recarga
+ * con {@link #recargar} antes de rechazarse.
+ * <p>
+ * Los cambios hechos por otra instancia no llegan a esta caché: {@code asignador.cache.ttl}
+ * es el tiempo máximo durante el cual una cola puede seguir con el orden anterior (por
+ * ejemplo, tras cambiar el vencimiento de un lote en otra instancia).
+ */
+@Service
+public class AsignadorLotes {
+
+    /** Fila de stock con existencias, en la posición que le toca dentro de su cola */
+    public record LoteEnCola(Long stockId, Long varianteId, Long loteId, LocalDate fechaVencimiento) {
+    }
+
+    /** Cantidad que sale de una fila de stock */
+    public record PorcionLote(Long stockId, Long loteId, int cantidad) {
+    }
+
+    private record ClaveCola(Long almacenId, Long varianteId) {
+    }
+
+    static final Comparator<LoteEnCola> ORDEN_FEFO = Comparator
+            .comparing(LoteEnCola::fechaVencimiento, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(LoteEnCola::stockId);
+
+    private final StockAlmacenRepository stockAlmacenRepository;
+
+    // Cada cola es una lista inmutable ya ordenada: se lee sin bloqueos y se reemplaza entera
+    private final Cache<ClaveCola, List<LoteEnCola>> colas;
+
+    public AsignadorLotes(StockAlmacenRepository stockAlmacenRepository,
+            @Value("${asignador.cache.tamanio-maximo:50000}") long tamanioMaximo,
+            @Value("${asignador.cache.ttl:1m}") Duration ttl) {
+        this.stockAlmacenRepository = stockAlmacenRepository;
+        this.colas = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Reparte la cantidad siguiendo la cola, sin modificar nada. Si se indica lote solo se
+     * usa ese; si la variante requiere lote se omite el stock sin lote. Cuando el stock no
+     * alcanza, la suma de las porciones es menor que la cantidad pedida.
+     *
+     * @param disponibles cantidad disponible por id de stock; las filas ausentes no tienen stock
+     */
+    public static List<PorcionLote> asignar(List<LoteEnCola> cola, Map<Long, Integer> disponibles,
+            Long loteId, boolean requiereLote, int cantidad) {
+        List<PorcionLote> porciones = new ArrayList<>();
+        int restante = cantidad;
+        for (LoteEnCola lote : cola) {
+            if (restante <= 0) {
+                break;
+            }
+            if (loteId != null ? !loteId.equals(lote.loteId()) : requiereLote && lote.loteId() == null) {
+                continue;
+            }
+            int disponible = disponibles.getOrDefault(lote.stockId(), 0);
+            if (disponible <= 0) {
+                continue;
+            }
+            int porcion = Math.min(disponible, restante);
+            porciones.add(new PorcionLote(lote.stockId(), lote.loteId(), porcion));
+            restante -= porcion;
+        }
+        return porciones;
+    }
+
+    /**
+     * Colas de las variantes en el almacén; las que no están en caché se leen juntas en una
+     * consulta. Toda variante pedida tiene su entrada, vacía si no tiene stock.
+     */
+    public Map<Long, List<LoteEnCola>> colas(Long almacenId, Collection<Long> varianteIds) {
+        Map<Long, List<LoteEnCola>> resultado = new HashMap<>();
+        List<Long> faltantes = new ArrayList<>();
+        for (Long varianteId : varianteIds) {
+            List<LoteEnCola> cola = colas.getIfPresent(new ClaveCola(almacenId, varianteId));
+            if (cola != null) {
+                resultado.put(varianteId, cola);
+            } else {
+                faltantes.add(varianteId);
+            }
+        }
+        if (!faltantes.isEmpty()) {
+            resultado.putAll(recargar(almacenId, faltantes));
+        }
+        return resultado;
+    }
+
+    /**
+     * Lee las colas desde la base de datos y reemplaza las que estaban en caché.
+     */
+    public Map<Long, List<LoteEnCola>> recargar(Long almacenId, Collection<Long> varianteIds) {
+        Map<Long, List<LoteEnCola>> leidas = stockAlmacenRepository.findColaFEFO(almacenId, varianteIds).stream()
+                .collect(Collectors.groupingBy(LoteEnCola::varianteId));
+
+        Map<Long, List<LoteEnCola>> resultado = new HashMap<>();
+        for (Long varianteId : varianteIds) {
+            List<LoteEnCola> cola = leidas.getOrDefault(varianteId, List.of()).stream()
+                    .sorted(ORDEN_FEFO)
+                    .toList();
+            colas.put(new ClaveCola(almacenId, varianteId), cola);
+            resultado.put(varianteId, cola);
+        }
+        return resultado;
+    }
+
+    /**
+     * Ubica (o retira, si quedó sin stock) una fila de stock en su cola cuando la transacción
+     * actual confirma. Si la cola no está en caché no hay nada que actualizar.
+     */
+    public void actualizar(Long almacenId, LoteEnCola lote, boolean conStock) {
+        alConfirmar(() -> colas.asMap().computeIfPresent(new ClaveCola(almacenId, lote.varianteId()),
+                (clave, cola) -> {
+                    List<LoteEnCola> nueva = new ArrayList<>(cola);
+                    nueva.removeIf(l -> l.stockId().equals(lote.stockId()));
+                    if (conStock) {
+                        nueva.add(lote);
+                        nueva.sort(ORDEN_FEFO);
+                    }
+                    return List.copyOf(nueva);
+                }));
+    }
+
+    /**
+     * Retira de sus colas las filas que la transacción actual dejó sin stock.
+     *
+     * @param agotados ids de stock agotados por id de variante
+     */
+    public void retirarAgotados(Long almacenId, Map<Long, Set<Long>> agotados) {
+        if (agotados.isEmpty()) {
+            return;
+        }
+        alConfirmar(() -> agotados.forEach((varianteId, stockIds) -> colas.asMap()
+                .computeIfPresent(new ClaveCola(almacenId, varianteId), (clave, cola) -> cola.stream()
+                        .filter(l -> !stockIds.contains(l.stockId()))
+                        .toList())));
+    }
+
+    /**
+     * Descarta la cola para que la próxima venta la lea de nuevo; se usa cuando el cambio no
+     * identifica la fila de stock (entradas por upsert).
+     */
+    public void invalidar(Long almacenId, Long varianteId) {
+        ClaveCola clave = new ClaveCola(almacenId, varianteId);
+        colas.invalidate(clave);
+        // Una venta concurrente pudo volver a cargarla antes de que la entrada fuera visible
+        alConfirmar(() -> colas.invalidate(clave));
+    }
+
+    /**
+     * Descarta las colas de la variante en todos los almacenes; se usa cuando cambia un lote
+     * (su vencimiento decide el orden) o se elimina.
+     */
+    public void invalidar(Long varianteId) {
+        Runnable descartar = () -> colas.asMap().keySet().removeIf(clave -> clave.varianteId().equals(varianteId));
+        descartar.run();
+        alConfirmar(descartar);
+    }
+
+    private void alConfirmar(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,331 @@
+package com.skadi.backend.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.skadi.backend.dto.ProductoDTO;
+import com.skadi.backend.dto.VarianteDTO;
+import com.skadi.backend.dto.VarianteSkuDTO;
+import com.skadi.backend.entities.CambioSincronizacion;
+import com.skadi.backend.entities.EntidadSincronizacion;
+import com.skadi.backend.repositories.CambioSincronizacionRepository;
+import com.skadi.backend.repositories.EmpresaRepository;
+import com.skadi.backend.repositories.ProductoRepository;
+import com.skadi.backend.repositories.ProductoVarianteRepository;
+import com.skadi.backend.repositories.VersionSincronizacionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Catálogo de productos y variantes de cada empresa en memoria, ya convertido a DTO.
+ * Se carga completo en la primera lectura de la empresa; luego cada alta, cambio o baja de
+ * un producto o variante marca solo ese producto como pendiente al confirmar la transacción,
+ * y la siguiente lectura relee únicamente los productos pendientes.
+ * <p>
+ * Los cambios hechos por otra instancia se detectan con la versión de sincronización de la
+ * empresa ({@link SincronizacionService}): cada {@code catalogo.cache.verificacion} una
+ * lectura compara la versión con la del catálogo y marca como pendientes los productos y
+ * variantes que cambiaron desde entonces. Ese intervalo es el tiempo máximo que una
+ * instancia puede servir un producto desactualizado.
+ * <p>
+ * El peso de un catálogo es su cantidad de variantes. La caché completa está limitada por
+ * {@code catalogo.cache.peso-maximo} y cada empresa por {@code catalogo.cache.peso-maximo-empresa}:
+ * una empresa que lo supera no se guarda y sus lecturas van a la base de datos. Las
+ * estadísticas se publican como {@code cache.gets}, {@code cache.evictions}, etc. con la
+ * etiqueta {@code cache=catalogo}. Al arrancar se precargan los catálogos
+ * ({@code catalogo.cache.precargar}).
+ */
+@Service
+public class CatalogoCache {
+
+    /**
+     * Productos ordenados por id, variantes por id y resumen de variantes por SKU
+     * (normalizado con {@link #claveSku}), de solo lectura.
+     */
+    public record Catalogo(NavigableMap<Long, ProductoDTO> productos, Map<Long, VarianteDTO> variantes,
+            Map<String, VarianteSkuDTO> skus) {
+    }
+
+    // version cambia con cada producto marcado pendiente; excedido indica una empresa sobre su
+    // presupuesto. versionSincronizacion es la versión de la empresa ya reflejada en el catálogo
+    // y verificada el System.nanoTime() en que se comparó por última vez
+    private record Entrada(Catalogo catalogo, Set<Long> pendientes, long version, boolean excedido,
+            long versionSincronizacion, long verificada) {
+
+        private static Entrada excedida() {
+            return new Entrada(null, Set.of(), 0, true, 0, System.nanoTime());
+        }
+
+        private int peso() {
+            return excedido ? 1 : Math.max(1, catalogo.variantes().size());
+        }
+
+        private Entrada conPendientes(Set<Long> productoIds) {
+            if (excedido) {
+                return this;
+            }
+            Set<Long> nuevos = new HashSet<>(pendientes);
+            nuevos.addAll(productoIds);
+            return new Entrada(catalogo, Set.copyOf(nuevos), version + 1, false, versionSincronizacion, verificada);
+        }
+
+        private Entrada verificada(long versionSincronizacion, long verificada, Set<Long> productoIds) {
+            Entrada conCambios = productoIds.isEmpty() ? this : conPendientes(productoIds);
+            return new Entrada(catalogo, conCambios.pendientes(), conCambios.version(), excedido,
+                    versionSincronizacion, verificada);
+        }
+    }
+
+    // Entidades de sincronización que forman parte del catálogo
+    private static final Set<EntidadSincronizacion> ENTIDADES = EnumSet.of(EntidadSincronizacion.PRODUCTO,
+            EntidadSincronizacion.VARIANTE);
+
+    // Con más cambios que estos desde la última verificación se recarga el catálogo completo
+    private static final int MAX_CAMBIOS = 1000;
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+
+    private final ProductoRepository productoRepository;
+    private final ProductoVarianteRepository varianteRepository;
+    private final EmpresaRepository empresaRepository;
+    private final VersionSincronizacionRepository versionRepository;
+    private final CambioSincronizacionRepository cambioRepository;
+    private final long pesoMaximo;
+    private final long pesoMaximoEmpresa;
+    private final boolean precargar;
+    private final long verificacion;
+
+    private final Cache<Long, Entrada> catalogos;
+    // Invalidaciones por empresa: una carga completa que se cruzó con alguna de su empresa no se guarda
+    private final Map<Long, AtomicLong> cambios = new ConcurrentHashMap<>();
+
+    public CatalogoCache(ProductoRepository productoRepository,
+            ProductoVarianteRepository varianteRepository,
+            EmpresaRepository empresaRepository,
+            VersionSincronizacionRepository versionRepository,
+            CambioSincronizacionRepository cambioRepository,
+            MeterRegistry meterRegistry,
+            @Value("${catalogo.cache.peso-maximo:1000000}") long pesoMaximo,
+            @Value("${catalogo.cache.peso-maximo-empresa:50000}") long pesoMaximoEmpresa,
+            @Value("${catalogo.cache.ttl:12h}") Duration ttl,
+            @Value("${catalogo.cache.verificacion:5s}") Duration verificacion,
+            @Value("${catalogo.cache.precargar:true}") boolean precargar) {
+        this.productoRepository = productoRepository;
+        this.varianteRepository = varianteRepository;
+        this.empresaRepository = empresaRepository;
+        this.versionRepository = versionRepository;
+        this.cambioRepository = cambioRepository;
+        this.verificacion = verificacion.toNanos();
+        this.pesoMaximo = pesoMaximo;
+        this.pesoMaximoEmpresa = pesoMaximoEmpresa;
+        this.precargar = precargar;
+        this.catalogos = Caffeine.newBuilder()
+                .maximumWeight(pesoMaximo)
+                .weigher((Long empresaId, Entrada entrada) -> entrada.peso())
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, catalogos, "catalogo");
+    }
+
+    /**
+     * Catálogo de la empresa, o vacío si la empresa supera su presupuesto y debe leerse de
+     * la base de datos.
+     */
+    public Optional<Catalogo> catalogo(Long empresaId) {
+        Entrada entrada = catalogos.getIfPresent(empresaId);
+        if (entrada != null && !entrada.excedido() && System.nanoTime() - entrada.verificada() >= verificacion) {
+            entrada = verificar(empresaId, entrada);
+        }
+        if (entrada == null) {
+            AtomicLong contador = contador(empresaId);
+            long cambiosAntes = contador.get();
+            entrada = cargar(empresaId);
+            if (contador.get() == cambiosAntes) {
+                catalogos.put(empresaId, entrada);
+            }
+        } else if (!entrada.pendientes().isEmpty()) {
+            entrada = refrescar(empresaId, entrada);
+        }
+        return Optional.ofNullable(entrada.catalogo());
+    }
+
+    /**
+     * Carga los catálogos de todas las empresas al arrancar, hasta llenar el peso máximo, para
+     * que las primeras lecturas (búsquedas por SKU en caja) ya se resuelvan en memoria.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void precargar() {
+        if (!precargar) {
+            return;
+        }
+        for (Long empresaId : empresaRepository.findAllIds()) {
+            if (catalogos.policy().eviction().orElseThrow().weightedSize().orElse(0) >= pesoMaximo) {
+                return;
+            }
+            catalogo(empresaId);
+        }
+    }
+
+    /**
+     * Marca el producto (y con él sus variantes) para releerlo cuando confirme la
+     * transacción actual.
+     */
+    public void invalidarProducto(Long empresaId, Long productoId) {
+        Runnable marcar = () -> {
+            contador(empresaId).incrementAndGet();
+            catalogos.asMap().computeIfPresent(empresaId, (id, entrada) -> entrada.conPendientes(Set.of(productoId)));
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            marcar.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                marcar.run();
+            }
+        });
+    }
+
+    private AtomicLong contador(Long empresaId) {
+        return cambios.computeIfAbsent(empresaId, id -> new AtomicLong());
+    }
+
+    private Entrada cargar(Long empresaId) {
+        long verificada = System.nanoTime();
+        if (varianteRepository.countByEmpresaId(empresaId) > pesoMaximoEmpresa) {
+            return Entrada.excedida();
+        }
+        // La versión se lee antes que los productos: un cambio que se cruce con la carga se
+        // vuelve a aplicar en la próxima verificación
+        long versionSincronizacion = versionSincronizacion(empresaId);
+        NavigableMap<Long, ProductoDTO> productos = new TreeMap<>();
+        productoRepository.findAllWithVariantesByEmpresaId(empresaId)
+                .forEach(producto -> productos.put(producto.getId(), ProductoService.toDTO(producto)));
+        return new Entrada(catalogo(productos), Set.of(), 0, false, versionSincronizacion, verificada);
+    }
+
+    /**
+     * Marca como pendientes los productos que cambiaron (en cualquier instancia) después de la
+     * versión del catálogo. Devuelve null si hay que recargarlo completo: demasiados cambios o
+     * una variante que el catálogo no conoce, cuyo producto no se puede deducir.
+     */
+    private Entrada verificar(Long empresaId, Entrada entrada) {
+        long verificada = System.nanoTime();
+        long version = versionSincronizacion(empresaId);
+        Set<Long> productoIds = new HashSet<>();
+        if (version > entrada.versionSincronizacion()) {
+            List<CambioSincronizacion> cambiosCatalogo = cambioRepository.findDesdeByEntidadIn(empresaId,
+                    entrada.versionSincronizacion(), ENTIDADES, Limit.of(MAX_CAMBIOS + 1));
+            if (cambiosCatalogo.size() > MAX_CAMBIOS) {
+                catalogos.invalidate(empresaId);
+                return null;
+            }
+            for (CambioSincronizacion cambio : cambiosCatalogo) {
+                Long id = cambio.getId().getEntidadId();
+                if (cambio.getId().getEntidad() == EntidadSincronizacion.PRODUCTO) {
+                    productoIds.add(id);
+                    continue;
+                }
+                VarianteDTO variante = entrada.catalogo().variantes().get(id);
+                if (variante == null) {
+                    catalogos.invalidate(empresaId);
+                    return null;
+                }
+                productoIds.add(variante.getProductoId());
+            }
+        }
+
+        Entrada actualizada = entrada.verificada(version, verificada, productoIds);
+        // Si otro producto se marcó mientras tanto, esa entrada se verifica en la próxima lectura
+        catalogos.asMap().computeIfPresent(empresaId,
+                (id, actual) -> actual.version() == entrada.version() ? actualizada : actual);
+        return actualizada;
+    }
+
+    private long versionSincronizacion(Long empresaId) {
+        Long version = versionRepository.findVersion(empresaId);
+        return version != null ? version : 0;
+    }
+
+    private Entrada refrescar(Long empresaId, Entrada entrada) {
+        NavigableMap<Long, ProductoDTO> productos = new TreeMap<>(entrada.catalogo().productos());
+        productos.keySet().removeAll(entrada.pendientes());
+        productoRepository.findAllWithVariantesByIdIn(entrada.pendientes()).stream()
+                .filter(producto -> producto.getEmpresa().getId().equals(empresaId))
+                .forEach(producto -> productos.put(producto.getId(), ProductoService.toDTO(producto)));
+        Entrada refrescada = new Entrada(catalogo(productos), Set.of(), entrada.version(), false,
+                entrada.versionSincronizacion(), entrada.verificada());
+
+        // Si otro producto se marcó mientras tanto se conserva la entrada con ese pendiente
+        catalogos.asMap().computeIfPresent(empresaId,
+                (id, actual) -> actual.version() == entrada.version() ? refrescada : actual);
+        return refrescada;
+    }
+
+    /**
+     * Clave del índice de SKU: sin espacios alrededor, sin acentos y en mayúsculas, como
+     * compara la colación de MySQL.
+     */
+    public static String claveSku(String sku) {
+        return sinAcentos(sku.trim()).toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Texto para comparar los filtros en memoria igual que la colación de MySQL
+     * (utf8mb4_0900_ai_ci): sin acentos y sin distinguir mayúsculas.
+     */
+    public static String claveTexto(String texto) {
+        return sinAcentos(texto).toLowerCase(Locale.ROOT);
+    }
+
+    private static String sinAcentos(String texto) {
+        return MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+    }
+
+    private static Catalogo catalogo(NavigableMap<Long, ProductoDTO> productos) {
+        Map<Long, VarianteDTO> variantes = new HashMap<>();
+        Map<String, VarianteSkuDTO> skus = new HashMap<>();
+        productos.values().forEach(producto -> producto.getVariantes().forEach(variante -> {
+            variantes.put(variante.getId(), variante);
+            // Si un SKU se repite queda la variante del producto más antiguo
+            if (variante.getSku() != null) {
+                skus.putIfAbsent(claveSku(variante.getSku()), VarianteSkuDTO.builder()
+                        .sku(variante.getSku())
+                        .varianteId(variante.getId())
+                        .nombre(variante.getNombre())
+                        .productoId(producto.getId())
+                        .productoNombre(producto.getNombre())
+                        .precioVenta(variante.getPrecioVenta())
+                        .requiereLote(producto.getRequiereLote())
+                        .build());
+            }
+        }));
+        return new Catalogo(Collections.unmodifiableNavigableMap(productos), Map.copyOf(variantes),
+                Map.copyOf(skus));
+    }
+}
@@ -2,21 +2,26 @@ package com.skadi.backend.services;
 
 import com.skadi.backend.dto.CompraDTO;
 import com.skadi.backend.dto.CompraDetalleDTO;
+import com.skadi.backend.dto.PaginaDTO;
+import com.skadi.backend.dto.StockEventoDTO;
 import com.skadi.backend.entities.*;
 import com.skadi.backend.exceptions.BadRequestException;
 import com.skadi.backend.exceptions.ResourceNotFoundException;
 import com.skadi.backend.repositories.*;
 import com.skadi.backend.security.TenantContext;
+import com.skadi.backend.security.UsuarioPrincipal;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,19 +30,40 @@ public class CompraService {
 
         private final CompraRepository compraRepository;
         private final CompraDetalleRepository compraDetalleRepository;
-        private final AlmacenRepository almacenRepository;
+        private final ReferenciaService referenciaService;
         private final ProductoVarianteRepository varianteRepository;
         private final LoteRepository loteRepository;
         private final StockAlmacenRepository stockAlmacenRepository;
         private final KardexMovimientoRepository kardexRepository;
-        private final EmpresaRepository empresaRepository;
-        private final UsuarioRepository usuarioRepository;
+        private final KardexSaldoService kardexSaldoService;
+        private final AsignadorLotes asignadorLotes;
+        private final SincronizacionService sincronizacionService;
+        private final NotificadorStock notificadorStock;
+        private final ReintentoBloqueos reintentoBloqueos;
+
+        // Entrada de una línea de compra al stock, aplicada después de validar todas las líneas
+        private record Entrada(ProductoVariante variante, Lote lote, int cantidad, BigDecimal costoUnitario) {
+        }
+
+        private static final Comparator<Entrada> ORDEN_ENTRADAS = Comparator
+                        .comparing((Entrada entrada) -> entrada.variante().getId())
+                        .thenComparing(entrada -> entrada.lote() != null ? entrada.lote().getId() : 0L);
 
-        public List<CompraDTO> findAll() {
+        @Transactional(readOnly = true)
+        public PaginaDTO<CompraDTO> findAll(Long almacenId, LocalDateTime desde, LocalDateTime hasta,
+                        String proveedor, String numeroDocumento, String cursor, Integer limite) {
                 Long empresaId = TenantContext.getCurrentTenant();
-                return compraRepository.findByEmpresaId(empresaId).stream()
-                                .map(this::toDTO)
-                                .collect(Collectors.toList());
+                int tamanio = Paginacion.limite(limite);
+                Paginacion.CursorFecha desdeCursor = Paginacion.leerCursorFecha(cursor);
+
+                // Primero los ids de la página por índice y luego los documentos con sus detalles
+                List<Long> ids = compraRepository.findIdsPagina(empresaId, almacenId, desde, hasta, proveedor,
+                                numeroDocumento, desdeCursor.fecha(), desdeCursor.id(), Limit.of(tamanio + 1));
+                Map<Long, Compra> compras = compraRepository.findAllWithDetallesByIdIn(ids).stream()
+                                .collect(Collectors.toMap(Compra::getId, Function.identity()));
+
+                return Paginacion.pagina(ids.stream().map(compras::get).toList(), tamanio, this::toDTO,
+                                compra -> Paginacion.cursorFecha(compra.getFecha(), compra.getId()));
         }
 
         public CompraDTO findById(Long id) {
@@ -47,19 +73,20 @@ public class CompraService {
                 return toDTO(compra);
         }
 
-        @Transactional
         public CompraDTO create(CompraDTO dto) {
                 Long empresaId = TenantContext.getCurrentTenant();
+                Long usuarioId = UsuarioPrincipal.actual().id();
+
+                // Si la compra pierde un deadlock contra otra se repite completa en una transacción nueva
+                return reintentoBloqueos.ejecutar("compra", () -> registrarCompra(empresaId, usuarioId, dto));
+        }
 
-                Empresa empresa = empresaRepository.findById(empresaId)
-                                .orElseThrow(() -> new ResourceNotFoundException("Empresa no encontrada"));
+        private CompraDTO registrarCompra(Long empresaId, Long usuarioId, CompraDTO dto) {
+                Empresa empresa = referenciaService.empresa(empresaId);
 
-                Almacen almacen = almacenRepository.findByIdAndEmpresaId(dto.getAlmacenId(), empresaId)
-                                .orElseThrow(() -> new ResourceNotFoundException("Almacén no encontrado"));
+                Almacen almacen = referenciaService.almacen(empresaId, dto.getAlmacenId());
 
-                String username = SecurityContextHolder.getContext().getAuthentication().getName();
-                Usuario usuario = usuarioRepository.findByUsername(username)
-                                .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado"));
+                Usuario usuario = referenciaService.usuario(usuarioId);
 
                 // Crear compra
                 Compra compra = Compra.builder()
@@ -73,10 +100,12 @@ public class CompraService {
                                 .build();
 
                 BigDecimal totalCompra = BigDecimal.ZERO;
+                List<Entrada> entradas = new ArrayList<>();
 
                 // Procesar detalles
                 for (CompraDetalleDTO detalleDTO : dto.getDetalles()) {
-                        ProductoVariante variante = varianteRepository.findById(detalleDTO.getVarianteId())
+                        ProductoVariante variante = varianteRepository
+                                        .findByIdAndEmpresaId(detalleDTO.getVarianteId(), empresaId)
                                         .orElseThrow(() -> new ResourceNotFoundException(
                                                         "Variante no encontrada: " + detalleDTO.getVarianteId()));
 
@@ -85,7 +114,7 @@ public class CompraService {
                         boolean requiereLote = Boolean.TRUE.equals(variante.getProducto().getRequiereLote());
 
                         if (detalleDTO.getLoteId() != null) {
-                                lote = loteRepository.findById(detalleDTO.getLoteId())
+                                lote = loteRepository.findByIdAndEmpresaId(detalleDTO.getLoteId(), empresaId)
                                                 .orElseThrow(() -> new ResourceNotFoundException("Lote no encontrado"));
                         } else if (detalleDTO.getCodigoLoteNuevo() != null
                                         && !detalleDTO.getCodigoLoteNuevo().isEmpty()) {
@@ -99,10 +128,12 @@ public class CompraService {
                                 // Crear nuevo lote
                                 lote = Lote.builder()
                                                 .variante(variante)
+                                                .empresa(empresa)
                                                 .codigoLote(detalleDTO.getCodigoLoteNuevo())
                                                 .fechaVencimiento(detalleDTO.getFechaVencimientoLote())
                                                 .build();
                                 lote = loteRepository.save(lote);
+                                sincronizacionService.registrar(empresaId, EntidadSincronizacion.LOTE, lote.getId());
                         }
 
                         // Validar si el producto requiere lote
@@ -127,99 +158,71 @@ public class CompraService {
                         compra.getDetalles().add(detalle);
                         totalCompra = totalCompra.add(costoTotal);
 
-                        // Actualizar stock
-                        StockAlmacen stock = getOrCreateStock(empresa, almacen, variante, lote);
-                        updateStockEntrada(stock, detalleDTO.getCantidad(), detalleDTO.getCostoUnitario());
-
-                        // Registrar movimiento kardex
-                        registrarMovimientoEntrada(empresa, almacen, variante, lote, usuario,
-                                        detalleDTO.getCantidad(), detalleDTO.getCostoUnitario(), "compra");
+                        entradas.add(new Entrada(variante, lote, detalleDTO.getCantidad(), detalleDTO.getCostoUnitario()));
                 }
 
-                compra.setTotal(totalCompra);
-                compra = compraRepository.save(compra);
+                // Las filas de stock y los saldos se bloquean siempre por variante y lote, así dos
+                // compras con los mismos productos en distinto orden no se bloquean en cruz
+                entradas.sort(ORDEN_ENTRADAS);
 
-                return toDTO(compra);
-        }
+                // Los movimientos se insertan juntos al final para que Hibernate los agrupe en lotes JDBC
+                List<KardexMovimiento> movimientos = new ArrayList<>();
+                List<StockEventoDTO> eventos = new ArrayList<>();
 
-        private StockAlmacen getOrCreateStock(Empresa empresa, Almacen almacen,
-                        ProductoVariante variante, Lote lote) {
-                if (lote != null) {
-                        return stockAlmacenRepository.findByAlmacenIdAndVarianteIdAndLoteId(
-                                        almacen.getId(), variante.getId(), lote.getId())
-                                        .orElseGet(() -> StockAlmacen.builder()
-                                                        .empresa(empresa)
-                                                        .almacen(almacen)
-                                                        .variante(variante)
-                                                        .lote(lote)
-                                                        .stock(0)
-                                                        .costoPromedio(BigDecimal.ZERO)
-                                                        .build());
-                } else {
-                        return stockAlmacenRepository.findByAlmacenIdAndVarianteIdAndLoteIsNull(
-                                        almacen.getId(), variante.getId())
-                                        .orElseGet(() -> StockAlmacen.builder()
-                                                        .empresa(empresa)
-                                                        .almacen(almacen)
-                                                        .variante(variante)
-                                                        .stock(0)
-                                                        .costoPromedio(BigDecimal.ZERO)
-                                                        .build());
-                }
-        }
+                for (Entrada entrada : entradas) {
+                        ProductoVariante variante = entrada.variante();
+                        Lote lote = entrada.lote();
 
-        private void updateStockEntrada(StockAlmacen stock, int cantidad, BigDecimal costoUnitario) {
-                // Cálculo de costo promedio ponderado
-                BigDecimal stockActual = BigDecimal.valueOf(stock.getStock());
-                BigDecimal costoActual = stock.getCostoPromedio().multiply(stockActual);
-                BigDecimal nuevaCantidad = BigDecimal.valueOf(cantidad);
-                BigDecimal nuevoCosto = costoUnitario.multiply(nuevaCantidad);
+                        // Actualizar stock (crea la fila o suma con costo promedio ponderado)
+                        stockAlmacenRepository.upsertEntrada(empresa.getId(), almacen.getId(), variante.getId(),
+                                        lote != null ? lote.getId() : null,
+                                        entrada.cantidad(), entrada.costoUnitario());
+                        asignadorLotes.invalidar(almacen.getId(), variante.getId());
 
-                BigDecimal totalCantidad = stockActual.add(nuevaCantidad);
-                BigDecimal totalCosto = costoActual.add(nuevoCosto);
+                        // Registrar movimiento kardex
+                        KardexMovimiento movimiento = registrarMovimientoEntrada(empresa, almacen, variante, lote,
+                                        usuario, entrada.cantidad(), entrada.costoUnitario(), "compra");
+                        movimientos.add(movimiento);
+
+                        stockAlmacenRepository.findEventoByClave(almacen.getId(), variante.getId(),
+                                        lote != null ? lote.getId() : 0L)
+                                        .ifPresent(evento -> {
+                                                sincronizacionService.registrar(empresaId,
+                                                                EntidadSincronizacion.STOCK, evento.getStockId());
+                                                evento.setSecuencia(movimiento.getSecuencia());
+                                                eventos.add(evento);
+                                        });
+                }
 
-                BigDecimal nuevoCostoPromedio = totalCantidad.compareTo(BigDecimal.ZERO) > 0
-                                ? totalCosto.divide(totalCantidad, 2, RoundingMode.HALF_UP)
-                                : BigDecimal.ZERO;
+                compra.setTotal(totalCompra);
+                compra = compraRepository.save(compra);
+                kardexRepository.saveAll(movimientos);
+                notificadorStock.publicar(empresaId, eventos);
 
-                stock.setStock(stock.getStock() + cantidad);
-                stock.setCostoPromedio(nuevoCostoPromedio);
-                stockAlmacenRepository.save(stock);
+                return toDTO(compra);
         }
 
-        private void registrarMovimientoEntrada(Empresa empresa, Almacen almacen,
+        private KardexMovimiento registrarMovimientoEntrada(Empresa empresa, Almacen almacen,
                         ProductoVariante variante, Lote lote,
                         Usuario usuario, int cantidad,
                         BigDecimal costoUnitario, String referenciaTipo) {
-                // Obtener último saldo
-                var ultimoMovimiento = lote != null
-                                ? kardexRepository.findLastMovimientoByLote(variante.getId(), almacen.getId(),
-                                                lote.getId())
-                                : kardexRepository.findLastMovimiento(variante.getId(), almacen.getId());
-
-                int saldoAnterior = ultimoMovimiento.map(KardexMovimiento::getSaldoCantidad).orElse(0);
-                BigDecimal costoPromedioAnterior = ultimoMovimiento
-                                .map(KardexMovimiento::getSaldoCostoUnitario)
-                                .orElse(BigDecimal.ZERO);
-
-                int nuevoSaldo = saldoAnterior + cantidad;
-                BigDecimal costoTotal = costoUnitario.multiply(BigDecimal.valueOf(cantidad));
+                // Actualizar saldo vigente (costo promedio ponderado)
+                KardexSaldoService.SaldoMovimiento saldo = kardexSaldoService.registrarEntrada(empresa.getId(),
+                                almacen.getId(), variante.getId(), lote != null ? lote.getId() : null, cantidad, costoUnitario);
 
-                // Calcular nuevo costo promedio
-                BigDecimal totalAnterior = costoPromedioAnterior.multiply(BigDecimal.valueOf(saldoAnterior));
-                BigDecimal nuevoCostoPromedio = nuevoSaldo > 0
-                                ? totalAnterior.add(costoTotal).divide(BigDecimal.valueOf(nuevoSaldo), 2,
-                                                RoundingMode.HALF_UP)
-                                : BigDecimal.ZERO;
+                int nuevoSaldo = saldo.saldoCantidad();
+                BigDecimal nuevoCostoPromedio = saldo.saldoCostoUnitario();
+                BigDecimal costoTotal = costoUnitario.multiply(BigDecimal.valueOf(cantidad));
                 BigDecimal saldoCostoTotal = nuevoCostoPromedio.multiply(BigDecimal.valueOf(nuevoSaldo));
 
-                KardexMovimiento movimiento = KardexMovimiento.builder()
+                return KardexMovimiento.builder()
                                 .empresa(empresa)
                                 .almacen(almacen)
                                 .variante(variante)
                                 .lote(lote)
                                 .usuario(usuario)
                                 .fecha(LocalDateTime.now())
+                                .secuencia(saldo.secuencia())
                                 .tipo("entrada")
                                 .cantidad(cantidad)
                                 .costoUnitario(costoUnitario)
@@ -229,8 +232,6 @@ public class CompraService {
                                 .saldoCostoTotal(saldoCostoTotal)
                                 .referencia(referenciaTipo)
                                 .build();
-
-                kardexRepository.save(movimiento);
         }
 
         private CompraDTO toDTO(Compra compra) {
@@ -0,0 +1,166 @@
+package com.skadi.backend.services;
+
+import com.skadi.backend.entities.KardexMovimiento;
+import com.skadi.backend.entities.KardexSaldo;
+import com.skadi.backend.entities.KardexSaldoId;
+import com.skadi.backend.repositories.KardexMovimientoRepository;
+import com.skadi.backend.repositories.KardexSaldoRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * Mantiene los saldos vigentes del kardex (tabla kardex_saldos).
+ * Cada movimiento actualiza el saldo agregado de la variante en el almacén y, si tiene lote,
+ * el saldo del lote. Las filas se leen y bloquean por clave primaria dentro de la transacción
+ * del documento (compra, venta o ajuste).
+ * <p>
+ * El bloqueo del saldo agregado serializa los movimientos de (almacén, variante), por lo que
+ * su contador es la secuencia que se asigna a cada movimiento del kardex.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(propagation = Propagation.MANDATORY)
+public class KardexSaldoService {
+
+    private final KardexSaldoRepository saldoRepository;
+    private final KardexMovimientoRepository kardexRepository;
+
+    /**
+     * Saldo resultante del movimiento (del lote, o el agregado si no hay lote) y la secuencia
+     * asignada al movimiento en (almacén, variante).
+     */
+    public record SaldoMovimiento(int saldoCantidad, BigDecimal saldoCostoUnitario, long secuencia) {
+    }
+
+    /**
+     * Entrada con costo promedio ponderado. Retorna el saldo del lote, o el agregado si no hay lote.
+     */
+    public SaldoMovimiento registrarEntrada(Long empresaId, Long almacenId, Long varianteId, Long loteId,
+            int cantidad, BigDecimal costoUnitario) {
+        KardexSaldo agregado = obtenerParaActualizar(empresaId, almacenId, varianteId, KardexSaldoId.SIN_LOTE,
+                BigDecimal.ZERO);
+        aplicarEntrada(agregado, cantidad, costoUnitario);
+        if (loteId == null) {
+            return resultado(agregado, agregado);
+        }
+
+        KardexSaldo saldoLote = obtenerParaActualizar(empresaId, almacenId, varianteId, loteId, BigDecimal.ZERO);
+        aplicarEntrada(saldoLote, cantidad, costoUnitario);
+        return resultado(saldoLote, agregado);
+    }
+
+    /**
+     * Salida al costo promedio vigente. Si el saldo no existía se inicia con el costo indicado.
+     */
+    public SaldoMovimiento registrarSalida(Long empresaId, Long almacenId, Long varianteId, Long loteId,
+            int cantidad, BigDecimal costoUnitario) {
+        KardexSaldo agregado = obtenerParaActualizar(empresaId, almacenId, varianteId, KardexSaldoId.SIN_LOTE,
+                costoUnitario);
+        aplicarCantidad(agregado, -cantidad);
+        if (loteId == null) {
+            return resultado(agregado, agregado);
+        }
+
+        KardexSaldo saldoLote = obtenerParaActualizar(empresaId, almacenId, varianteId, loteId, costoUnitario);
+        aplicarCantidad(saldoLote, -cantidad);
+        return resultado(saldoLote, agregado);
+    }
+
+    /**
+     * Ajuste de inventario: suma la diferencia (positiva o negativa) y valoriza el saldo del
+     * movimiento al costo promedio del stock ajustado.
+     */
+    public SaldoMovimiento registrarAjuste(Long empresaId, Long almacenId, Long varianteId, Long loteId,
+            int diferencia, BigDecimal costoPromedio) {
+        KardexSaldo agregado = obtenerParaActualizar(empresaId, almacenId, varianteId, KardexSaldoId.SIN_LOTE,
+                costoPromedio);
+        aplicarCantidad(agregado, diferencia);
+        if (loteId == null) {
+            agregado.setSaldoCostoUnitario(costoPromedio);
+            return resultado(agregado, agregado);
+        }
+
+        KardexSaldo saldoLote = obtenerParaActualizar(empresaId, almacenId, varianteId, loteId, costoPromedio);
+        aplicarCantidad(saldoLote, diferencia);
+        saldoLote.setSaldoCostoUnitario(costoPromedio);
+        return resultado(saldoLote, agregado);
+    }
+
+    private SaldoMovimiento resultado(KardexSaldo saldo, KardexSaldo agregado) {
+        return new SaldoMovimiento(saldo.getSaldoCantidad(), saldo.getSaldoCostoUnitario(), agregado.getSecuencia());
+    }
+
+    private void aplicarEntrada(KardexSaldo saldo, int cantidad, BigDecimal costoUnitario) {
+        int saldoAnterior = saldo.getSaldoCantidad();
+        int nuevoSaldo = saldoAnterior + cantidad;
+
+        // Calcular nuevo costo promedio
+        BigDecimal totalAnterior = saldo.getSaldoCostoUnitario().multiply(BigDecimal.valueOf(saldoAnterior));
+        BigDecimal costoTotal = costoUnitario.multiply(BigDecimal.valueOf(cantidad));
+        BigDecimal nuevoCostoPromedio = nuevoSaldo > 0
+                ? totalAnterior.add(costoTotal).divide(BigDecimal.valueOf(nuevoSaldo), 2, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO;
+
+        saldo.setSaldoCantidad(nuevoSaldo);
+        saldo.setSaldoCostoUnitario(nuevoCostoPromedio);
+        saldo.setSecuencia(saldo.getSecuencia() + 1);
+    }
+
+    private void aplicarCantidad(KardexSaldo saldo, int diferencia) {
+        saldo.setSaldoCantidad(saldo.getSaldoCantidad() + diferencia);
+        saldo.setSecuencia(saldo.getSecuencia() + 1);
+    }
+
+    private KardexSaldo obtenerParaActualizar(Long empresaId, Long almacenId, Long varianteId, Long loteId,
+            BigDecimal costoInicial) {
+        KardexSaldoId id = new KardexSaldoId(empresaId, almacenId, varianteId, loteId);
+        // La fila se crea antes de bloquearla: un SELECT ... FOR UPDATE sobre una clave que no
+        // existe toma un gap lock, y dos transacciones que luego insertan en el mismo hueco se
+        // esperan entre sí (deadlock). La comprobación previa es una lectura sin bloqueo.
+        if (!saldoRepository.existsById(id)) {
+            KardexSaldo inicial = saldoInicial(almacenId, varianteId, loteId, costoInicial);
+            saldoRepository.insertIfAbsent(empresaId, almacenId, varianteId, loteId,
+                    inicial.getSaldoCantidad(), inicial.getSaldoCostoUnitario(), inicial.getSecuencia());
+        }
+        return saldoRepository.findForUpdate(id)
+                .orElseThrow(() -> new IllegalStateException("No se pudo crear el saldo de kardex " + id));
+    }
+
+    /**
+     * Saldo de partida para variantes con movimientos anteriores a la tabla de saldos.
+     */
+    private KardexSaldo saldoInicial(Long almacenId, Long varianteId, Long loteId, BigDecimal costoInicial) {
+        if (!KardexSaldoId.SIN_LOTE.equals(loteId)) {
+            return kardexRepository.findLastMovimientoByLote(varianteId, almacenId, loteId)
+                    .map(mov -> saldo(mov.getSaldoCantidad(), mov.getSaldoCostoUnitario(), 0L))
+                    .orElseGet(() -> saldo(0, costoInicial, 0L));
+        }
+
+        // Agregado: suma del último saldo de cada lote; la secuencia continúa desde el último movimiento
+        List<KardexMovimiento> ultimos = kardexRepository.findUltimosMovimientosPorLote(varianteId, almacenId);
+        int cantidad = ultimos.stream().mapToInt(KardexMovimiento::getSaldoCantidad).sum();
+        long secuencia = ultimos.stream().mapToLong(KardexMovimiento::getSecuencia).max().orElse(0L);
+        if (ultimos.isEmpty() || cantidad <= 0) {
+            return saldo(cantidad, ultimos.isEmpty() ? costoInicial : ultimos.get(0).getSaldoCostoUnitario(),
+                    secuencia);
+        }
+        BigDecimal costoTotal = ultimos.stream()
+                .map(mov -> mov.getSaldoCostoUnitario().multiply(BigDecimal.valueOf(mov.getSaldoCantidad())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return saldo(cantidad, costoTotal.divide(BigDecimal.valueOf(cantidad), 2, RoundingMode.HALF_UP), secuencia);
+    }
+
+    private KardexSaldo saldo(int cantidad, BigDecimal costoUnitario, long secuencia) {
+        return KardexSaldo.builder()
+                .saldoCantidad(cantidad)
+                .saldoCostoUnitario(costoUnitario)
+                .secuencia(secuencia)
+                .build();
+    }
+}
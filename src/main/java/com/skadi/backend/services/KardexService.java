@@ -1,15 +1,16 @@
 package com.skadi.backend.services;
 
 import com.skadi.backend.dto.KardexMovimientoDTO;
-import com.skadi.backend.entities.KardexMovimiento;
+import com.skadi.backend.dto.PaginaDTO;
 import com.skadi.backend.repositories.KardexMovimientoRepository;
 import com.skadi.backend.security.TenantContext;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -17,46 +18,26 @@ public class KardexService {
 
     private final KardexMovimientoRepository kardexRepository;
 
-    public List<KardexMovimientoDTO> findKardex(Long varianteId, Long almacenId, Long loteId) {
+    /**
+     * Kardex paginado por secuencia: el cursor es la secuencia del último movimiento entregado
+     */
+    @Transactional(readOnly = true)
+    public PaginaDTO<KardexMovimientoDTO> findKardex(Long varianteId, Long almacenId, Long loteId,
+            String cursor, Integer limite) {
         Long empresaId = TenantContext.getCurrentTenant();
-
-        List<KardexMovimiento> movimientos;
-        if (loteId != null) {
-            movimientos = kardexRepository.findKardexByLote(empresaId, varianteId, almacenId, loteId);
-        } else {
-            movimientos = kardexRepository.findKardex(empresaId, varianteId, almacenId);
-        }
-
-        return movimientos.stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        int tamanio = Paginacion.limite(limite);
+        Long despuesDe = Paginacion.leerCursorId(cursor);
+
+        List<KardexMovimientoDTO> movimientos = loteId != null
+                ? kardexRepository.findKardexByLote(empresaId, varianteId, almacenId, loteId, despuesDe,
+                        Limit.of(tamanio + 1))
+                : kardexRepository.findKardex(empresaId, varianteId, almacenId, despuesDe, Limit.of(tamanio + 1));
+        return Paginacion.pagina(movimientos, tamanio, mov -> mov, mov -> Paginacion.cursorId(mov.getSecuencia()));
     }
 
+    @Transactional(readOnly = true)
     public List<KardexMovimientoDTO> findByDateRange(LocalDateTime desde, LocalDateTime hasta) {
         Long empresaId = TenantContext.getCurrentTenant();
-        return kardexRepository.findByEmpresaIdAndFechaBetween(empresaId, desde, hasta).stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
-    }
-
-    private KardexMovimientoDTO toDTO(KardexMovimiento mov) {
-        return KardexMovimientoDTO.builder()
-                .id(mov.getId())
-                .almacenId(mov.getAlmacen().getId())
-                .almacenNombre(mov.getAlmacen().getNombre())
-                .varianteId(mov.getVariante().getId())
-                .varianteNombre(mov.getVariante().getNombre())
-                .loteId(mov.getLote() != null ? mov.getLote().getId() : null)
-                .codigoLote(mov.getLote() != null ? mov.getLote().getCodigoLote() : null)
-                .fecha(mov.getFecha())
-                .tipo(mov.getTipo())
-                .cantidad(mov.getCantidad())
-                .costoUnitario(mov.getCostoUnitario())
-                .costoTotal(mov.getCostoTotal())
-                .saldoCantidad(mov.getSaldoCantidad())
-                .saldoCostoUnitario(mov.getSaldoCostoUnitario())
-                .saldoCostoTotal(mov.getSaldoCostoTotal())
-                .referencia(mov.getReferencia())
-                .build();
+        return kardexRepository.findByEmpresaIdAndFechaBetween(empresaId, desde, hasta);
     }
 }
@@ -1,6 +1,7 @@
 package com.skadi.backend.services;
 
 import com.skadi.backend.dto.LoteDTO;
+import com.skadi.backend.entities.EntidadSincronizacion;
 import com.skadi.backend.entities.Lote;
 import com.skadi.backend.entities.ProductoVariante;
 import com.skadi.backend.exceptions.ResourceNotFoundException;
@@ -13,6 +14,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,23 +23,20 @@ public class LoteService {
 
     private final LoteRepository loteRepository;
     private final ProductoVarianteRepository varianteRepository;
+    private final SincronizacionService sincronizacionService;
+    private final AsignadorLotes asignadorLotes;
 
     public List<LoteDTO> findByVarianteId(Long varianteId) {
         ProductoVariante variante = getVarianteWithTenantCheck(varianteId);
         return loteRepository.findByVarianteId(variante.getId()).stream()
-                .map(this::toDTO)
+                .map(LoteService::toDTO)
                 .collect(Collectors.toList());
     }
 
     public LoteDTO findById(Long id) {
-        Lote lote = loteRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Lote no encontrado"));
-
-        // Verificar tenant
         Long empresaId = TenantContext.getCurrentTenant();
-        if (!lote.getVariante().getProducto().getEmpresa().getId().equals(empresaId)) {
-            throw new ResourceNotFoundException("Lote no encontrado");
-        }
+        Lote lote = loteRepository.findByIdAndEmpresaId(id, empresaId)
+                .orElseThrow(() -> new ResourceNotFoundException("Lote no encontrado"));
 
         return toDTO(lote);
     }
@@ -48,43 +47,42 @@ public class LoteService {
 
         Lote lote = Lote.builder()
                 .variante(variante)
+                .empresa(variante.getEmpresa())
                 .codigoLote(dto.getCodigoLote())
                 .fechaVencimiento(dto.getFechaVencimiento())
                 .build();
 
         lote = loteRepository.save(lote);
+        sincronizacionService.registrar(variante.getEmpresa().getId(), EntidadSincronizacion.LOTE, lote.getId());
         return toDTO(lote);
     }
 
     @Transactional
     public LoteDTO update(Long id, LoteDTO dto) {
-        Lote lote = loteRepository.findById(id)
+        Long empresaId = TenantContext.getCurrentTenant();
+        Lote lote = loteRepository.findByIdAndEmpresaId(id, empresaId)
                 .orElseThrow(() -> new ResourceNotFoundException("Lote no encontrado"));
 
-        // Verificar tenant
-        Long empresaId = TenantContext.getCurrentTenant();
-        if (!lote.getVariante().getProducto().getEmpresa().getId().equals(empresaId)) {
-            throw new ResourceNotFoundException("Lote no encontrado");
+        // El vencimiento decide el orden FEFO de las colas en caché
+        if (!Objects.equals(lote.getFechaVencimiento(), dto.getFechaVencimiento())) {
+            asignadorLotes.invalidar(lote.getVariante().getId());
         }
-
         lote.setCodigoLote(dto.getCodigoLote());
         lote.setFechaVencimiento(dto.getFechaVencimiento());
 
         lote = loteRepository.save(lote);
+        sincronizacionService.registrar(empresaId, EntidadSincronizacion.LOTE, lote.getId());
         return toDTO(lote);
     }
 
     @Transactional
     public void delete(Long id) {
-        Lote lote = loteRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Lote no encontrado"));
-
-        // Verificar tenant
         Long empresaId = TenantContext.getCurrentTenant();
-        if (!lote.getVariante().getProducto().getEmpresa().getId().equals(empresaId)) {
-            throw new ResourceNotFoundException("Lote no encontrado");
-        }
+        Lote lote = loteRepository.findByIdAndEmpresaId(id, empresaId)
+                .orElseThrow(() -> new ResourceNotFoundException("Lote no encontrado"));
 
+        sincronizacionService.registrarEliminado(empresaId, EntidadSincronizacion.LOTE, id);
+        asignadorLotes.invalidar(lote.getVariante().getId());
         loteRepository.delete(lote);
     }
 
@@ -92,23 +90,17 @@ public class LoteService {
         Long empresaId = TenantContext.getCurrentTenant();
         LocalDate fechaLimite = LocalDate.now().plusDays(dias);
         return loteRepository.findLotesPorVencer(empresaId, fechaLimite).stream()
-                .map(this::toDTO)
+                .map(LoteService::toDTO)
                 .collect(Collectors.toList());
     }
 
     private ProductoVariante getVarianteWithTenantCheck(Long varianteId) {
-        ProductoVariante variante = varianteRepository.findById(varianteId)
-                .orElseThrow(() -> new ResourceNotFoundException("Variante no encontrada"));
-
         Long empresaId = TenantContext.getCurrentTenant();
-        if (!variante.getProducto().getEmpresa().getId().equals(empresaId)) {
-            throw new ResourceNotFoundException("Variante no encontrada");
-        }
-
-        return variante;
+        return varianteRepository.findByIdAndEmpresaId(varianteId, empresaId)
+                .orElseThrow(() -> new ResourceNotFoundException("Variante no encontrada"));
     }
 
-    private LoteDTO toDTO(Lote lote) {
+    static LoteDTO toDTO(Lote lote) {
         return LoteDTO.builder()
                 .id(lote.getId())
                 .varianteId(lote.getVariante().getId())
@@ -0,0 +1,231 @@
+package com.skadi.backend.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.skadi.backend.dto.StockEventoDTO;
+import com.skadi.backend.security.TenantContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Envía a los suscriptores de {@code GET /stock/stream} (SSE) el nuevo stock de cada fila
+ * que cambia en una venta, compra o ajuste, cuando la transacción confirma.
+ * <p>
+ * Cada evento lleva la secuencia del kardex del cambio. Las transacciones pueden confirmar
+ * y avisar en otro orden que el de sus cambios, así que un evento con una secuencia menor o
+ * igual a la última difundida para su fila se descarta (esa última se recuerda durante
+ * {@code stock.stream.ventana}).
+ * <p>
+ * Cada suscriptor tiene sus eventos pendientes por fila de stock: si no alcanza a leerlos,
+ * los cambios de una misma fila se combinan y solo recibe el valor más reciente. Si las
+ * filas pendientes superan {@code stock.stream.buffer}, se descartan y el suscriptor
+ * recibe un evento {@code desborde} para que vuelva a leer el stock. Quien escribe nunca
+ * espera a un suscriptor lento: los envíos salen desde hilos propios.
+ * <p>
+ * Métricas: {@code stock.stream.suscriptores} y {@code stock.stream.desbordes}.
+ */
+@Service
+public class NotificadorStock {
+
+    private final int buffer;
+    private final long timeout;
+    private final Counter desbordes;
+
+    // Suscriptores conectados por empresa
+    private final Map<Long, Set<Suscriptor>> suscriptores = new ConcurrentHashMap<>();
+    private final AtomicInteger conectados = new AtomicInteger();
+    private final ExecutorService envios;
+    // Secuencia del último evento difundido por id de fila de stock
+    private final Cache<Long, Long> ultimas;
+
+    private record Envio(boolean desbordado, List<StockEventoDTO> eventos) {
+    }
+
+    private final class Suscriptor {
+        private final SseEmitter emisor;
+        // Último stock pendiente de enviar por id de fila, en el orden en que cambiaron
+        private final Map<Long, StockEventoDTO> pendientes = new LinkedHashMap<>();
+        private boolean desbordado;
+        // Indica que hay un hilo enviando los pendientes de este suscriptor
+        private final AtomicBoolean activo = new AtomicBoolean();
+
+        private Suscriptor(SseEmitter emisor) {
+            this.emisor = emisor;
+        }
+
+        private synchronized void encolar(List<StockEventoDTO> eventos) {
+            if (desbordado) {
+                return;
+            }
+            for (StockEventoDTO evento : eventos) {
+                StockEventoDTO anterior = pendientes.remove(evento.getStockId());
+                pendientes.put(evento.getStockId(), anterior != null
+                        && anterior.getSecuencia() > evento.getSecuencia() ? anterior : evento);
+            }
+            if (pendientes.size() > buffer) {
+                pendientes.clear();
+                desbordado = true;
+                desbordes.increment();
+            }
+        }
+
+        private synchronized Envio tomar() {
+            Envio envio = new Envio(desbordado, new ArrayList<>(pendientes.values()));
+            pendientes.clear();
+            desbordado = false;
+            return envio;
+        }
+
+        private synchronized boolean hayPendientes() {
+            return desbordado || !pendientes.isEmpty();
+        }
+    }
+
+    public NotificadorStock(MeterRegistry meterRegistry,
+            @Value("${stock.stream.buffer:1000}") int buffer,
+            @Value("${stock.stream.timeout:30m}") Duration timeout,
+            @Value("${stock.stream.ventana:1m}") Duration ventana) {
+        this.buffer = buffer;
+        this.timeout = timeout.toMillis();
+        this.ultimas = Caffeine.newBuilder()
+                .expireAfterWrite(ventana)
+                .build();
+        this.desbordes = meterRegistry.counter("stock.stream.desbordes");
+        meterRegistry.gauge("stock.stream.suscriptores", conectados);
+
+        AtomicInteger hilos = new AtomicInteger();
+        this.envios = Executors.newCachedThreadPool(tarea -> {
+            Thread hilo = new Thread(tarea, "notificador-stock-" + hilos.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /**
+     * Suscribe al cliente a los cambios de stock de su empresa hasta que se desconecte o
+     * venza {@code stock.stream.timeout}; al reconectarse conviene releer el stock.
+     */
+    public SseEmitter suscribir() {
+        Long empresaId = TenantContext.getCurrentTenant();
+        SseEmitter emisor = new SseEmitter(timeout);
+        Suscriptor suscriptor = new Suscriptor(emisor);
+
+        Runnable quitar = () -> {
+            if (suscriptores.getOrDefault(empresaId, Set.of()).remove(suscriptor)) {
+                conectados.decrementAndGet();
+            }
+        };
+        emisor.onCompletion(quitar);
+        emisor.onTimeout(quitar);
+        emisor.onError(error -> quitar.run());
+
+        suscriptores.computeIfAbsent(empresaId, id -> ConcurrentHashMap.newKeySet()).add(suscriptor);
+        conectados.incrementAndGet();
+        try {
+            // Envía las cabeceras de inmediato para que el cliente y los proxies vean la conexión abierta
+            emisor.send(SseEmitter.event().comment("conectado"));
+        } catch (IOException e) {
+            emisor.completeWithError(e);
+        }
+        return emisor;
+    }
+
+    /**
+     * Envía el nuevo stock de las filas a los suscriptores de la empresa cuando la
+     * transacción actual confirma; si se revierte no se envía nada.
+     */
+    public void publicar(Long empresaId, List<StockEventoDTO> eventos) {
+        if (eventos.isEmpty()) {
+            return;
+        }
+        Runnable difundir = () -> difundir(empresaId, eventos);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            difundir.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                difundir.run();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void detener() {
+        suscriptores.values().forEach(conjunto -> conjunto.forEach(suscriptor -> suscriptor.emisor.complete()));
+        envios.shutdown();
+    }
+
+    private void difundir(Long empresaId, List<StockEventoDTO> eventos) {
+        // Las secuencias se registran aunque no haya suscriptores: uno que se conecte después
+        // no debe recibir un cambio más viejo que otro ya confirmado
+        Set<Suscriptor> conjunto = suscriptores.computeIfAbsent(empresaId, id -> ConcurrentHashMap.newKeySet());
+        // Filtrar y encolar juntos: un evento que pasa el filtro no puede quedar detrás de uno más nuevo
+        synchronized (conjunto) {
+            List<StockEventoDTO> vigentes = eventos.stream()
+                    .filter(this::esMasReciente)
+                    .toList();
+            if (vigentes.isEmpty()) {
+                return;
+            }
+            for (Suscriptor suscriptor : conjunto) {
+                suscriptor.encolar(vigentes);
+                if (suscriptor.activo.compareAndSet(false, true)) {
+                    envios.execute(() -> enviar(suscriptor));
+                }
+            }
+        }
+    }
+
+    // Se llama con el bloqueo de la empresa, dueña de la fila: leer y guardar no se cruzan
+    private boolean esMasReciente(StockEventoDTO evento) {
+        Long ultima = ultimas.getIfPresent(evento.getStockId());
+        if (ultima != null && ultima >= evento.getSecuencia()) {
+            return false;
+        }
+        ultimas.put(evento.getStockId(), evento.getSecuencia());
+        return true;
+    }
+
+    private void enviar(Suscriptor suscriptor) {
+        try {
+            do {
+                while (suscriptor.hayPendientes()) {
+                    Envio envio = suscriptor.tomar();
+                    if (envio.desbordado()) {
+                        suscriptor.emisor.send(SseEmitter.event().name("desborde")
+                                .data("Se descartaron cambios de stock; vuelva a consultar el stock"));
+                    }
+                    for (StockEventoDTO evento : envio.eventos()) {
+                        suscriptor.emisor.send(SseEmitter.event().name("stock").data(evento));
+                    }
+                }
+                suscriptor.activo.set(false);
+                // Un cambio encolado justo antes de liberar al suscriptor no encontró hilo activo
+            } while (suscriptor.hayPendientes() && suscriptor.activo.compareAndSet(false, true));
+        } catch (IOException | IllegalStateException e) {
+            // El cliente se desconectó o el emisor ya terminó
+            suscriptor.emisor.completeWithError(e);
+        }
+    }
+}
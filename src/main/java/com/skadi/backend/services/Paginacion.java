@@ -0,0 +1,96 @@
+package com.skadi.backend.services;
+
+import com.skadi.backend.dto.PaginaDTO;
+import com.skadi.backend.exceptions.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Paginación por cursor (keyset). El cursor es opaco para el cliente: codifica la clave
+ * del último elemento entregado, (fecha, id) para documentos, solo id para catálogos o la
+ * secuencia para el kardex, y la consulta siguiente continúa desde esa clave usando el
+ * índice en lugar de OFFSET.
+ */
+public final class Paginacion {
+
+    public static final int LIMITE_DEFECTO = 50;
+    public static final int LIMITE_MAXIMO = 500;
+
+    private Paginacion() {
+    }
+
+    public record CursorFecha(LocalDateTime fecha, Long id) {
+    }
+
+    public static int limite(Integer limite) {
+        if (limite == null) {
+            return LIMITE_DEFECTO;
+        }
+        if (limite < 1 || limite > LIMITE_MAXIMO) {
+            throw new BadRequestException("El límite debe estar entre 1 y " + LIMITE_MAXIMO);
+        }
+        return limite;
+    }
+
+    public static String cursorFecha(LocalDateTime fecha, Long id) {
+        return codificar(fecha + "|" + id);
+    }
+
+    public static CursorFecha leerCursorFecha(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return new CursorFecha(null, null);
+        }
+        String[] partes = decodificar(cursor).split("\\|");
+        try {
+            return new CursorFecha(LocalDateTime.parse(partes[0]), Long.valueOf(partes[1]));
+        } catch (DateTimeParseException | ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new BadRequestException("Cursor inválido");
+        }
+    }
+
+    public static String cursorId(Long id) {
+        return codificar(String.valueOf(id));
+    }
+
+    public static Long leerCursorId(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(decodificar(cursor));
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Cursor inválido");
+        }
+    }
+
+    /**
+     * Arma la página a partir de hasta {@code limite + 1} filas; la fila extra solo indica
+     * que existe una página siguiente.
+     */
+    public static <E, T> PaginaDTO<T> pagina(List<E> filas, int limite, Function<E, T> mapper,
+            Function<E, String> cursor) {
+        boolean hayMas = filas.size() > limite;
+        List<E> visibles = hayMas ? filas.subList(0, limite) : filas;
+        return PaginaDTO.<T>builder()
+                .items(visibles.stream().map(mapper).toList())
+                .siguienteCursor(hayMas ? cursor.apply(visibles.get(visibles.size() - 1)) : null)
+                .build();
+    }
+
+    private static String codificar(String valor) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodificar(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Cursor inválido");
+        }
+    }
+}
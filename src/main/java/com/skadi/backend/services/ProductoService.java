@@ -1,8 +1,10 @@
 package com.skadi.backend.services;
 
+import com.skadi.backend.dto.PaginaDTO;
 import com.skadi.backend.dto.ProductoDTO;
 import com.skadi.backend.dto.VarianteDTO;
 import com.skadi.backend.entities.Empresa;
+import com.skadi.backend.entities.EntidadSincronizacion;
 import com.skadi.backend.entities.Producto;
 import com.skadi.backend.entities.ProductoVariante;
 import com.skadi.backend.exceptions.BadRequestException;
@@ -12,10 +14,15 @@ import com.skadi.backend.repositories.ProductoRepository;
 import com.skadi.backend.repositories.ProductoVarianteRepository;
 import com.skadi.backend.security.TenantContext;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,16 +32,56 @@ public class ProductoService {
     private final ProductoRepository productoRepository;
     private final ProductoVarianteRepository varianteRepository;
     private final EmpresaRepository empresaRepository;
-
-    public List<ProductoDTO> findAll() {
+    private final CatalogoCache catalogoCache;
+    private final SincronizacionService sincronizacionService;
+
+    /**
+     * Sin transacción: con el catálogo en memoria la página se arma sin consultar la base
+     * de datos, y si la empresa no entra en la caché cada consulta usa la suya.
+     */
+    public PaginaDTO<ProductoDTO> findAll(String categoria, String estado, String texto, String cursor,
+            Integer limite) {
         Long empresaId = TenantContext.getCurrentTenant();
-        return productoRepository.findByEmpresaId(empresaId).stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        int tamanio = Paginacion.limite(limite);
+        Long cursorId = Paginacion.leerCursorId(cursor);
+
+        Optional<CatalogoCache.Catalogo> catalogo = catalogoCache.catalogo(empresaId);
+        if (catalogo.isPresent()) {
+            // Mismos filtros que findIdsPagina (la colación de MySQL no distingue acentos ni mayúsculas)
+            String buscado = texto != null ? CatalogoCache.claveTexto(texto) : null;
+            String categoriaBuscada = categoria != null ? CatalogoCache.claveTexto(categoria) : null;
+            String estadoBuscado = estado != null ? CatalogoCache.claveTexto(estado) : null;
+            NavigableMap<Long, ProductoDTO> productos = catalogo.get().productos();
+            List<ProductoDTO> filas = (cursorId != null ? productos.tailMap(cursorId, false) : productos)
+                    .values().stream()
+                    .filter(p -> categoriaBuscada == null || (p.getCategoria() != null
+                            && categoriaBuscada.equals(CatalogoCache.claveTexto(p.getCategoria()))))
+                    .filter(p -> estadoBuscado == null || (p.getEstado() != null
+                            && estadoBuscado.equals(CatalogoCache.claveTexto(p.getEstado()))))
+                    .filter(p -> buscado == null || CatalogoCache.claveTexto(p.getNombre()).contains(buscado)
+                            || CatalogoCache.claveTexto(p.getCodigo()).contains(buscado))
+                    .limit(tamanio + 1)
+                    .toList();
+            return Paginacion.pagina(filas, tamanio, Function.identity(), p -> Paginacion.cursorId(p.getId()));
+        }
+
+        // Primero los ids de la página y luego los productos con sus variantes
+        List<Long> ids = productoRepository.findIdsPagina(empresaId, categoria, estado, texto,
+                cursorId, Limit.of(tamanio + 1));
+        Map<Long, Producto> productos = productoRepository.findAllWithVariantesByIdIn(ids).stream()
+                .collect(Collectors.toMap(Producto::getId, Function.identity()));
+
+        return Paginacion.pagina(ids.stream().map(productos::get).toList(), tamanio, ProductoService::toDTO,
+                producto -> Paginacion.cursorId(producto.getId()));
     }
 
     public ProductoDTO findById(Long id) {
         Long empresaId = TenantContext.getCurrentTenant();
+        Optional<CatalogoCache.Catalogo> catalogo = catalogoCache.catalogo(empresaId);
+        if (catalogo.isPresent()) {
+            return Optional.ofNullable(catalogo.get().productos().get(id))
+                    .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado"));
+        }
         Producto producto = productoRepository.findByIdAndEmpresaId(id, empresaId)
                 .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado"));
         return toDTO(producto);
@@ -67,11 +114,16 @@ public class ProductoService {
         // Auto-crear variante default con el mismo nombre del producto
         ProductoVariante varianteDefault = ProductoVariante.builder()
                 .producto(producto)
+                .empresa(empresa)
                 .nombre(producto.getNombre())
                 .sku(producto.getCodigo() + "-DEFAULT")
                 .build();
         varianteRepository.save(varianteDefault);
 
+        catalogoCache.invalidarProducto(empresaId, producto.getId());
+        sincronizacionService.registrar(empresaId, EntidadSincronizacion.PRODUCTO, producto.getId());
+        sincronizacionService.registrar(empresaId, EntidadSincronizacion.VARIANTE, varianteDefault.getId());
+
         // Recargar producto con la variante
         producto = productoRepository.findById(producto.getId()).orElse(producto);
         return toDTO(producto);
@@ -102,6 +154,8 @@ public class ProductoService {
         }
 
         producto = productoRepository.save(producto);
+        catalogoCache.invalidarProducto(empresaId, producto.getId());
+        sincronizacionService.registrar(empresaId, EntidadSincronizacion.PRODUCTO, producto.getId());
         return toDTO(producto);
     }
 
@@ -110,10 +164,18 @@ public class ProductoService {
         Long empresaId = TenantContext.getCurrentTenant();
         Producto producto = productoRepository.findByIdAndEmpresaId(id, empresaId)
                 .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado"));
+        // Las variantes y sus lotes se eliminan en cascada con el producto
+        producto.getVariantes().forEach(variante -> {
+            variante.getLotes().forEach(lote -> sincronizacionService.registrarEliminado(empresaId,
+                    EntidadSincronizacion.LOTE, lote.getId()));
+            sincronizacionService.registrarEliminado(empresaId, EntidadSincronizacion.VARIANTE, variante.getId());
+        });
+        sincronizacionService.registrarEliminado(empresaId, EntidadSincronizacion.PRODUCTO, id);
         productoRepository.delete(producto);
+        catalogoCache.invalidarProducto(empresaId, id);
     }
 
-    private ProductoDTO toDTO(Producto producto) {
+    static ProductoDTO toDTO(Producto producto) {
         List<VarianteDTO> variantes = producto.getVariantes().stream()
                 .map(v -> VarianteDTO.builder()
                         .id(v.getId())
@@ -122,9 +184,17 @@ public class ProductoService {
                         .sku(v.getSku())
                         .precioCompra(v.getPrecioCompra())
                         .precioVenta(v.getPrecioVenta())
+                        .stockMinimo(v.getStockMinimo())
+                        .puntoReorden(v.getPuntoReorden())
                         .build())
                 .collect(Collectors.toList());
 
+        ProductoDTO dto = toDTOSinVariantes(producto);
+        dto.setVariantes(variantes);
+        return dto;
+    }
+
+    static ProductoDTO toDTOSinVariantes(Producto producto) {
         return ProductoDTO.builder()
                 .id(producto.getId())
                 .codigo(producto.getCodigo())
@@ -134,7 +204,6 @@ public class ProductoService {
                 .unidadBase(producto.getUnidadBase())
                 .estado(producto.getEstado())
                 .requiereLote(producto.getRequiereLote())
-                .variantes(variantes)
                 .build();
     }
 }
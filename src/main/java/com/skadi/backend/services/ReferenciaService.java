@@ -0,0 +1,72 @@
+package com.skadi.backend.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.skadi.backend.entities.Almacen;
+import com.skadi.backend.entities.Empresa;
+import com.skadi.backend.entities.Usuario;
+import com.skadi.backend.exceptions.ResourceNotFoundException;
+import com.skadi.backend.repositories.AlmacenRepository;
+import com.skadi.backend.repositories.EmpresaRepository;
+import com.skadi.backend.repositories.UsuarioRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Referencias a empresa, almacén y usuario para los documentos (ventas, compras, ajustes).
+ * Esos documentos solo necesitan la clave foránea, así que se devuelven proxies de
+ * getReferenceById sin consultar la base de datos. Lo único que se verifica es que el
+ * almacén pertenezca a la empresa, y ese dato se guarda en caché.
+ */
+@Service
+public class ReferenciaService {
+
+    private final EmpresaRepository empresaRepository;
+    private final AlmacenRepository almacenRepository;
+    private final UsuarioRepository usuarioRepository;
+
+    // almacenId -> empresaId dueña del almacén
+    private final Cache<Long, Long> empresaPorAlmacen;
+
+    public ReferenciaService(EmpresaRepository empresaRepository,
+            AlmacenRepository almacenRepository,
+            UsuarioRepository usuarioRepository,
+            @Value("${referencias.cache.tamanio-maximo:10000}") long tamanioMaximo,
+            @Value("${referencias.cache.ttl:10m}") Duration ttl) {
+        this.empresaRepository = empresaRepository;
+        this.almacenRepository = almacenRepository;
+        this.usuarioRepository = usuarioRepository;
+        this.empresaPorAlmacen = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * La empresa viene del token firmado, por lo que no se vuelve a validar.
+     */
+    public Empresa empresa(Long empresaId) {
+        return empresaRepository.getReferenceById(empresaId);
+    }
+
+    public Almacen almacen(Long empresaId, Long almacenId) {
+        // El loader devuelve null si no existe y Caffeine no guarda nulos: un almacén
+        // recién creado se encuentra en el siguiente intento
+        Long duenio = empresaPorAlmacen.get(almacenId,
+                id -> almacenRepository.findEmpresaIdById(id).orElse(null));
+        if (duenio == null || !duenio.equals(empresaId)) {
+            throw new ResourceNotFoundException("Almacén no encontrado");
+        }
+        return almacenRepository.getReferenceById(almacenId);
+    }
+
+    public Usuario usuario(Long usuarioId) {
+        return usuarioRepository.getReferenceById(usuarioId);
+    }
+
+    public void invalidarAlmacen(Long almacenId) {
+        empresaPorAlmacen.invalidate(almacenId);
+    }
+}
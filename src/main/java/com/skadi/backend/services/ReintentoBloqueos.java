@@ -0,0 +1,64 @@
+package com.skadi.backend.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Ejecuta una operación en su propia transacción y la repite si la base de datos la aborta
+ * por un deadlock o por agotar la espera de un bloqueo. Cada intento empieza una transacción
+ * nueva, por lo que la operación no debe dejar efectos fuera de ella.
+ * <p>
+ * Métricas: {@code bloqueos.reintentos} cuenta los intentos repetidos y
+ * {@code bloqueos.reintentos.agotados} las operaciones que fallaron en el último intento,
+ * ambas con la etiqueta {@code operacion}.
+ */
+@Service
+public class ReintentoBloqueos {
+
+    private static final long ESPERA_BASE_MS = 20;
+
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int intentosMaximos;
+
+    public ReintentoBloqueos(TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${bloqueos.intentos-maximos:3}") int intentosMaximos) {
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.intentosMaximos = intentosMaximos;
+    }
+
+    public <T> T ejecutar(String operacion, Supplier<T> accion) {
+        for (int intento = 1;; intento++) {
+            try {
+                return transactionTemplate.execute(status -> accion.get());
+            } catch (PessimisticLockingFailureException e) {
+                if (intento >= intentosMaximos) {
+                    meterRegistry.counter("bloqueos.reintentos.agotados", "operacion", operacion).increment();
+                    throw e;
+                }
+                meterRegistry.counter("bloqueos.reintentos", "operacion", operacion).increment();
+                esperar(intento, e);
+            }
+        }
+    }
+
+    // Espera creciente con variación aleatoria para que las transacciones que chocaron no
+    // vuelvan a coincidir
+    private void esperar(int intento, PessimisticLockingFailureException causa) {
+        long espera = ESPERA_BASE_MS * intento + ThreadLocalRandom.current().nextLong(ESPERA_BASE_MS);
+        try {
+            Thread.sleep(espera);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw causa;
+        }
+    }
+}
@@ -1,65 +1,91 @@
 package com.skadi.backend.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skadi.backend.dto.AgrupacionValorizacion;
+import com.skadi.backend.dto.FormatoExportacion;
 import com.skadi.backend.dto.KardexMovimientoDTO;
 import com.skadi.backend.dto.LoteDTO;
+import com.skadi.backend.dto.PaginaDTO;
+import com.skadi.backend.dto.StockBajoDTO;
 import com.skadi.backend.dto.StockDTO;
+import com.skadi.backend.dto.ValorizacionDTO;
+import com.skadi.backend.dto.ValorizacionGrupoDTO;
 import com.skadi.backend.entities.Lote;
-import com.skadi.backend.entities.StockAlmacen;
 import com.skadi.backend.repositories.KardexMovimientoRepository;
 import com.skadi.backend.repositories.LoteRepository;
 import com.skadi.backend.repositories.StockAlmacenRepository;
 import com.skadi.backend.security.TenantContext;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class ReporteService {
 
+    // Cada cuántas filas se envía al cliente lo escrito en la exportación
+    private static final int FILAS_POR_FLUSH = 500;
+
     private final StockAlmacenRepository stockAlmacenRepository;
     private final KardexMovimientoRepository kardexRepository;
     private final LoteRepository loteRepository;
+    private final ObjectMapper objectMapper;
 
     /**
      * Stock general por almacén
      */
     public List<StockDTO> getStockGeneral() {
         Long empresaId = TenantContext.getCurrentTenant();
-        return stockAlmacenRepository.findByEmpresaId(empresaId).stream()
-                .map(this::stockToDTO)
-                .collect(Collectors.toList());
+        return stockAlmacenRepository.findStockByEmpresaId(empresaId);
     }
 
     /**
-     * Valorización del inventario
+     * Valorización del inventario agregada en la base de datos. Los totales se obtienen
+     * sumando los grupos; el detalle por registro de stock es opcional y paginado.
      */
-    public Map<String, Object> getValorizacion() {
+    @Transactional(readOnly = true)
+    public ValorizacionDTO getValorizacion(AgrupacionValorizacion agrupacion, boolean incluirDetalle,
+            String cursor, Integer limite) {
         Long empresaId = TenantContext.getCurrentTenant();
-        List<StockAlmacen> stocks = stockAlmacenRepository.findByEmpresaId(empresaId);
+
+        List<ValorizacionGrupoDTO> grupos = switch (agrupacion) {
+            case ALMACEN -> stockAlmacenRepository.valorizarPorAlmacen(empresaId);
+            case CATEGORIA -> stockAlmacenRepository.valorizarPorCategoria(empresaId);
+            case PRODUCTO -> stockAlmacenRepository.valorizarPorProducto(empresaId);
+        };
 
         BigDecimal valorTotal = BigDecimal.ZERO;
-        int totalUnidades = 0;
-        List<StockDTO> detalle = stocks.stream().map(this::stockToDTO).collect(Collectors.toList());
+        long totalUnidades = 0;
+        for (ValorizacionGrupoDTO grupo : grupos) {
+            valorTotal = valorTotal.add(grupo.getValorTotal());
+            totalUnidades += grupo.getUnidades();
+        }
 
-        for (StockAlmacen stock : stocks) {
-            valorTotal = valorTotal.add(
-                    stock.getCostoPromedio().multiply(BigDecimal.valueOf(stock.getStock())));
-            totalUnidades += stock.getStock();
+        PaginaDTO<StockDTO> detalle = null;
+        if (incluirDetalle) {
+            int tamanio = Paginacion.limite(limite);
+            List<StockDTO> stocks = stockAlmacenRepository.findPagina(empresaId, null, null,
+                    Paginacion.leerCursorId(cursor), Limit.of(tamanio + 1));
+            detalle = Paginacion.pagina(stocks, tamanio, stock -> stock, stock -> Paginacion.cursorId(stock.getId()));
         }
 
-        Map<String, Object> result = new HashMap<>();
-        result.put("valorTotal", valorTotal);
-        result.put("totalUnidades", totalUnidades);
-        result.put("detalle", detalle);
-        return result;
+        return ValorizacionDTO.builder()
+                .agrupacion(agrupacion.getClave())
+                .valorTotal(valorTotal)
+                .totalUnidades(totalUnidades)
+                .grupos(grupos)
+                .detalle(detalle)
+                .build();
     }
 
     /**
@@ -78,26 +104,7 @@ public class ReporteService {
      */
     public List<KardexMovimientoDTO> getKardexProducto(Long varianteId, Long almacenId) {
         Long empresaId = TenantContext.getCurrentTenant();
-        return kardexRepository.findKardex(empresaId, varianteId, almacenId).stream()
-                .map(mov -> KardexMovimientoDTO.builder()
-                        .id(mov.getId())
-                        .almacenId(mov.getAlmacen().getId())
-                        .almacenNombre(mov.getAlmacen().getNombre())
-                        .varianteId(mov.getVariante().getId())
-                        .varianteNombre(mov.getVariante().getNombre())
-                        .loteId(mov.getLote() != null ? mov.getLote().getId() : null)
-                        .codigoLote(mov.getLote() != null ? mov.getLote().getCodigoLote() : null)
-                        .fecha(mov.getFecha())
-                        .tipo(mov.getTipo())
-                        .cantidad(mov.getCantidad())
-                        .costoUnitario(mov.getCostoUnitario())
-                        .costoTotal(mov.getCostoTotal())
-                        .saldoCantidad(mov.getSaldoCantidad())
-                        .saldoCostoUnitario(mov.getSaldoCostoUnitario())
-                        .saldoCostoTotal(mov.getSaldoCostoTotal())
-                        .referencia(mov.getReferencia())
-                        .build())
-                .collect(Collectors.toList());
+        return kardexRepository.findKardex(empresaId, varianteId, almacenId, null, Limit.unlimited());
     }
 
     /**
@@ -105,57 +112,65 @@ public class ReporteService {
      */
     public List<KardexMovimientoDTO> getMovimientosPorFecha(LocalDateTime desde, LocalDateTime hasta) {
         Long empresaId = TenantContext.getCurrentTenant();
-        return kardexRepository.findByEmpresaIdAndFechaBetween(empresaId, desde, hasta).stream()
-                .map(mov -> KardexMovimientoDTO.builder()
-                        .id(mov.getId())
-                        .almacenId(mov.getAlmacen().getId())
-                        .almacenNombre(mov.getAlmacen().getNombre())
-                        .varianteId(mov.getVariante().getId())
-                        .varianteNombre(mov.getVariante().getNombre())
-                        .loteId(mov.getLote() != null ? mov.getLote().getId() : null)
-                        .codigoLote(mov.getLote() != null ? mov.getLote().getCodigoLote() : null)
-                        .fecha(mov.getFecha())
-                        .tipo(mov.getTipo())
-                        .cantidad(mov.getCantidad())
-                        .costoUnitario(mov.getCostoUnitario())
-                        .costoTotal(mov.getCostoTotal())
-                        .saldoCantidad(mov.getSaldoCantidad())
-                        .saldoCostoUnitario(mov.getSaldoCostoUnitario())
-                        .saldoCostoTotal(mov.getSaldoCostoTotal())
-                        .referencia(mov.getReferencia())
-                        .build())
-                .collect(Collectors.toList());
+        return kardexRepository.findByEmpresaIdAndFechaBetween(empresaId, desde, hasta);
     }
 
     /**
-     * Productos con stock debajo del mínimo (placeholder - requiere campo de stock
-     * mínimo)
+     * Exporta los movimientos del rango escribiéndolos directamente en el writer. Las filas se
+     * leen de un cursor de solo avance y se escriben una a una, por lo que la memoria usada no
+     * depende de la cantidad de movimientos.
      */
-    public List<StockDTO> getProductosBajoStock(int stockMinimo) {
+    @Transactional(readOnly = true)
+    public void exportarMovimientos(LocalDateTime desde, LocalDateTime hasta, FormatoExportacion formato,
+            Writer writer) throws IOException {
         Long empresaId = TenantContext.getCurrentTenant();
-        return stockAlmacenRepository.findByEmpresaId(empresaId).stream()
-                .filter(s -> s.getStock() < stockMinimo)
-                .map(this::stockToDTO)
-                .collect(Collectors.toList());
+
+        if (formato == FormatoExportacion.CSV) {
+            writer.write("id,secuencia,fecha,almacen_id,almacen,variante_id,variante,lote_id,lote,tipo,cantidad,"
+                    + "costo_unitario,costo_total,saldo_cantidad,saldo_costo_unitario,saldo_costo_total,referencia\n");
+        }
+
+        try (Stream<KardexMovimientoDTO> movimientos = kardexRepository.streamMovimientos(empresaId, desde, hasta)) {
+            int filas = 0;
+            for (KardexMovimientoDTO mov : (Iterable<KardexMovimientoDTO>) movimientos::iterator) {
+                writer.write(formato == FormatoExportacion.CSV ? filaCsv(mov) : objectMapper.writeValueAsString(mov));
+                writer.write('\n');
+                if (++filas % FILAS_POR_FLUSH == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        writer.flush();
     }
 
-    private StockDTO stockToDTO(StockAlmacen stock) {
-        BigDecimal valorTotal = stock.getCostoPromedio()
-                .multiply(BigDecimal.valueOf(stock.getStock()));
-
-        return StockDTO.builder()
-                .almacenId(stock.getAlmacen().getId())
-                .almacenNombre(stock.getAlmacen().getNombre())
-                .varianteId(stock.getVariante().getId())
-                .varianteNombre(stock.getVariante().getNombre())
-                .productoNombre(stock.getVariante().getProducto().getNombre())
-                .sku(stock.getVariante().getSku())
-                .loteId(stock.getLote() != null ? stock.getLote().getId() : null)
-                .codigoLote(stock.getLote() != null ? stock.getLote().getCodigoLote() : null)
-                .stock(stock.getStock())
-                .costoPromedio(stock.getCostoPromedio())
-                .valorTotal(valorTotal)
-                .build();
+    /**
+     * Variantes cuyo stock por almacén (sumando lotes) llegó a su punto de reorden o está
+     * debajo de su stock mínimo
+     */
+    @Transactional(readOnly = true)
+    public List<StockBajoDTO> getProductosBajoStock(Long almacenId) {
+        Long empresaId = TenantContext.getCurrentTenant();
+        return stockAlmacenRepository.findStockBajo(empresaId, almacenId);
+    }
+
+    private String filaCsv(KardexMovimientoDTO mov) {
+        return Stream.of(mov.getId(), mov.getSecuencia(), mov.getFecha(), mov.getAlmacenId(), mov.getAlmacenNombre(),
+                mov.getVarianteId(), mov.getVarianteNombre(), mov.getLoteId(), mov.getCodigoLote(),
+                mov.getTipo(), mov.getCantidad(), mov.getCostoUnitario(), mov.getCostoTotal(),
+                mov.getSaldoCantidad(), mov.getSaldoCostoUnitario(), mov.getSaldoCostoTotal(), mov.getReferencia())
+                .map(this::campoCsv)
+                .collect(Collectors.joining(","));
+    }
+
+    private String campoCsv(Object valor) {
+        if (valor == null) {
+            return "";
+        }
+        String texto = valor.toString();
+        if (texto.contains(",") || texto.contains("\"") || texto.contains("\n") || texto.contains("\r")) {
+            return "\"" + texto.replace("\"", "\"\"") + "\"";
+        }
+        return texto;
     }
 
     private LoteDTO loteToDTO(Lote lote) {
@@ -0,0 +1,234 @@
+package com.skadi.backend.services;
+
+import com.skadi.backend.dto.VentaDTO;
+import com.skadi.backend.security.TenantContext;
+import com.skadi.backend.security.UsuarioPrincipal;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Modo opcional de registro de ventas con un solo escritor por almacén
+ * ({@code ventas.secuenciador.habilitado}). Las ventas que llegan a la vez para un almacén
+ * se encolan y un único hilo las toma en grupos de hasta
+ * {@code ventas.secuenciador.tamanio-grupo}, registrando cada grupo en una transacción: el
+ * stock se bloquea una vez por grupo y la asignación FIFO se hace sobre la vista en memoria.
+ * Cada venta recibe su propio resultado; si el grupo completo falla, sus ventas se
+ * registran una por una para aislar el error.
+ * <p>
+ * Los escritores salen de un grupo de {@code ventas.secuenciador.hilos} hilos; con más
+ * almacenes activos que hilos, los almacenes esperan su turno. Una venta que sigue en la
+ * cola después de {@code ventas.secuenciador.timeout} se retira sin registrar y la
+ * solicitud falla; si el escritor ya la tomó, se espera su resultado.
+ * <p>
+ * Métrica: {@code ventas.secuenciador.grupo} con el tamaño de cada grupo registrado.
+ */
+@Service
+public class SecuenciadorVentas {
+
+    private final VentaService ventaService;
+    private final ReferenciaService referenciaService;
+    private final ReintentoBloqueos reintentoBloqueos;
+    private final MeterRegistry meterRegistry;
+    private final boolean habilitado;
+    private final int tamanioGrupo;
+    private final long timeout;
+
+    // Almacenes con ventas pendientes o con un escritor activo; el escritor quita su cola al terminar
+    private final Map<Long, ColaAlmacen> colas = new ConcurrentHashMap<>();
+    private final ExecutorService escritores;
+    private volatile boolean detenido;
+
+    private record Solicitud(Long empresaId, VentaService.SolicitudVenta venta,
+            CompletableFuture<VentaDTO> resultado) {
+    }
+
+    // Ventas pendientes de un almacén; activa indica que hay un hilo escribiéndolas
+    private static final class ColaAlmacen {
+        private final Queue<Solicitud> pendientes = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean activa = new AtomicBoolean();
+    }
+
+    public SecuenciadorVentas(VentaService ventaService,
+            ReferenciaService referenciaService,
+            ReintentoBloqueos reintentoBloqueos,
+            MeterRegistry meterRegistry,
+            @Value("${ventas.secuenciador.habilitado:false}") boolean habilitado,
+            @Value("${ventas.secuenciador.tamanio-grupo:100}") int tamanioGrupo,
+            @Value("${ventas.secuenciador.hilos:8}") int hilosEscritores,
+            @Value("${ventas.secuenciador.timeout:30s}") Duration timeout) {
+        this.ventaService = ventaService;
+        this.referenciaService = referenciaService;
+        this.reintentoBloqueos = reintentoBloqueos;
+        this.meterRegistry = meterRegistry;
+        this.habilitado = habilitado;
+        this.tamanioGrupo = tamanioGrupo;
+        this.timeout = timeout.toMillis();
+
+        // Cada almacén tiene a lo sumo una tarea en espera, así que la cola del grupo tampoco crece sin límite
+        AtomicInteger hilos = new AtomicInteger();
+        this.escritores = Executors.newFixedThreadPool(hilosEscritores, tarea -> {
+            Thread hilo = new Thread(tarea, "secuenciador-ventas-" + hilos.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    /**
+     * Encola la venta en su almacén y espera a que el escritor la registre.
+     */
+    public VentaDTO registrar(VentaDTO dto) {
+        Long empresaId = TenantContext.getCurrentTenant();
+        Long usuarioId = UsuarioPrincipal.actual().id();
+
+        // El almacén se valida aquí: así cada cola solo recibe ventas de la empresa dueña
+        Long almacenId = referenciaService.almacen(empresaId, dto.getAlmacenId()).getId();
+
+        Solicitud solicitud = new Solicitud(empresaId, new VentaService.SolicitudVenta(dto, usuarioId),
+                new CompletableFuture<>());
+        // Encolar dentro de compute: el escritor no puede quitar la cola entre que se obtiene y se usa
+        ColaAlmacen cola = colas.compute(almacenId, (id, actual) -> {
+            ColaAlmacen destino = actual != null ? actual : new ColaAlmacen();
+            destino.pendientes.add(solicitud);
+            return destino;
+        });
+        if (detenido) {
+            // detener() pudo vaciar las colas antes de que esta venta se encolara
+            fallar(cola, new IllegalStateException("El servicio de ventas se está deteniendo"));
+        } else if (cola.activa.compareAndSet(false, true)) {
+            try {
+                escritores.execute(() -> escribir(almacenId, cola));
+            } catch (RejectedExecutionException e) {
+                cola.activa.set(false);
+                fallar(cola, new IllegalStateException("El servicio de ventas se está deteniendo"));
+            }
+        }
+
+        try {
+            return esperar(solicitud, cola);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    private VentaDTO esperar(Solicitud solicitud, ColaAlmacen cola) {
+        try {
+            // orTimeout completa el futuro sobre el que se llama: la copia deja intacto el del escritor
+            return solicitud.resultado().copy().orTimeout(timeout, TimeUnit.MILLISECONDS).join();
+        } catch (CompletionException e) {
+            if (!(e.getCause() instanceof TimeoutException)) {
+                throw e;
+            }
+            if (cola.pendientes.remove(solicitud)) {
+                throw new IllegalStateException(
+                        "La venta no se registró: el almacén tiene demasiadas ventas en espera; vuelva a enviarla");
+            }
+            // El escritor ya la tomó: cortar aquí dejaría al cliente sin saber si se registró
+            return solicitud.resultado().join();
+        }
+    }
+
+    /**
+     * Deja de aceptar ventas y hace fallar las que siguen en cola; las que un escritor ya
+     * tomó terminan de registrarse.
+     */
+    @PreDestroy
+    public void detener() {
+        detenido = true;
+        escritores.shutdown();
+        IllegalStateException error = new IllegalStateException("El servicio de ventas se está deteniendo");
+        colas.values().forEach(cola -> fallar(cola, error));
+    }
+
+    private void escribir(Long almacenId, ColaAlmacen cola) {
+        do {
+            List<Solicitud> grupo = List.of();
+            try {
+                while (!(grupo = tomarGrupo(cola)).isEmpty()) {
+                    registrarGrupo(almacenId, grupo);
+                }
+            } catch (Throwable e) {
+                // registrarGrupo ya resuelve los errores de las ventas; esto es un error del
+                // propio hilo y ninguna venta de la cola puede quedar esperando por él
+                grupo.forEach(solicitud -> solicitud.resultado().completeExceptionally(e));
+                fallar(cola, e);
+                throw e;
+            } finally {
+                cola.activa.set(false);
+            }
+            // Una venta encolada justo antes de liberar la cola no encontró escritor activo
+        } while (!cola.pendientes.isEmpty() && cola.activa.compareAndSet(false, true));
+
+        // Sin ventas ni escritor se quita la cola; una venta que llega después crea otra
+        colas.computeIfPresent(almacenId, (id, actual) ->
+                actual == cola && actual.pendientes.isEmpty() && !actual.activa.get() ? null : actual);
+    }
+
+    private void fallar(ColaAlmacen cola, Throwable error) {
+        Solicitud solicitud;
+        while ((solicitud = cola.pendientes.poll()) != null) {
+            solicitud.resultado().completeExceptionally(error);
+        }
+    }
+
+    private List<Solicitud> tomarGrupo(ColaAlmacen cola) {
+        List<Solicitud> grupo = new ArrayList<>();
+        Solicitud solicitud;
+        while (grupo.size() < tamanioGrupo && (solicitud = cola.pendientes.poll()) != null) {
+            grupo.add(solicitud);
+        }
+        return grupo;
+    }
+
+    private void registrarGrupo(Long almacenId, List<Solicitud> grupo) {
+        meterRegistry.summary("ventas.secuenciador.grupo").record(grupo.size());
+        try {
+            List<VentaService.ResultadoVenta> resultados = reintentoBloqueos.ejecutar("venta_grupo",
+                    () -> ventaService.registrarGrupo(grupo.get(0).empresaId(), almacenId,
+                            grupo.stream().map(Solicitud::venta).toList()));
+            for (int i = 0; i < grupo.size(); i++) {
+                completar(grupo.get(i), resultados.get(i));
+            }
+        } catch (RuntimeException e) {
+            if (grupo.size() == 1) {
+                grupo.get(0).resultado().completeExceptionally(e);
+                return;
+            }
+            // Reintentar una por una para que un error inesperado no afecte a todo el grupo
+            grupo.forEach(solicitud -> registrarGrupo(almacenId, List.of(solicitud)));
+        }
+    }
+
+    private void completar(Solicitud solicitud, VentaService.ResultadoVenta resultado) {
+        if (resultado.error() != null) {
+            solicitud.resultado().completeExceptionally(resultado.error());
+        } else {
+            solicitud.resultado().complete(resultado.venta());
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.skadi.backend.services;
+
+import com.skadi.backend.dto.SincronizacionDTO;
+import com.skadi.backend.dto.SincronizacionEliminadoDTO;
+import com.skadi.backend.entities.CambioSincronizacion;
+import com.skadi.backend.entities.EntidadSincronizacion;
+import com.skadi.backend.exceptions.BadRequestException;
+import com.skadi.backend.repositories.CambioSincronizacionRepository;
+import com.skadi.backend.repositories.LoteRepository;
+import com.skadi.backend.repositories.ProductoRepository;
+import com.skadi.backend.repositories.ProductoVarianteRepository;
+import com.skadi.backend.repositories.StockAlmacenRepository;
+import com.skadi.backend.repositories.VersionSincronizacionRepository;
+import com.skadi.backend.security.TenantContext;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Sincronización incremental de los clientes sin conexión (POS).
+ * <p>
+ * Cada empresa tiene un contador de versiones. Los servicios que escriben productos,
+ * variantes, lotes o stock anotan las filas que tocan con {@link #registrar} o
+ * {@link #registrarEliminado}; al confirmar, la transacción toma la siguiente versión de la
+ * empresa y la guarda en {@code sincronizacion_cambios} para esas filas. El contador se
+ * bloquea recién antes del commit, así que las escrituras de una misma empresa solo se
+ * esperan durante la confirmación, y las versiones quedan visibles en orden: un cliente que
+ * leyó hasta N no puede perder un cambio que confirme después con una versión menor o igual.
+ * <p>
+ * {@link #cambios} devuelve el estado actual de las filas que cambiaron después de una
+ * versión, paginado por versiones completas.
+ */
+@Service
+@RequiredArgsConstructor
+public class SincronizacionService {
+
+    // La actualización toma los valores de la fila que se intentó insertar (alias nuevo), así
+    // cada fila del lote liga sus parámetros una sola vez
+    private static final String GUARDAR_CAMBIO = "INSERT INTO sincronizacion_cambios "
+            + "(empresa_id, entidad, entidad_id, version, eliminado) VALUES (?, ?, ?, ?, ?) AS nuevo "
+            + "ON DUPLICATE KEY UPDATE version = nuevo.version, eliminado = nuevo.eliminado";
+
+    // Misma sentencia con VALUES(), obsoleto desde MySQL 8.0.20: H2 en modo MySQL (tests y
+    // desarrollo) no acepta el alias de fila
+    private static final String GUARDAR_CAMBIO_SIN_ALIAS = "INSERT INTO sincronizacion_cambios "
+            + "(empresa_id, entidad, entidad_id, version, eliminado) VALUES (?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE version = VALUES(version), eliminado = VALUES(eliminado)";
+
+    private final VersionSincronizacionRepository versionRepository;
+    private final CambioSincronizacionRepository cambioRepository;
+    private final ProductoRepository productoRepository;
+    private final ProductoVarianteRepository varianteRepository;
+    private final LoteRepository loteRepository;
+    private final StockAlmacenRepository stockAlmacenRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    private String guardarCambio;
+
+    private record Fila(Long empresaId, EntidadSincronizacion entidad, Long id) {
+    }
+
+    // Filas tocadas por la transacción actual; una fila anotada varias veces se guarda una vez
+    private final class Pendientes implements TransactionSynchronization {
+        private final Map<Fila, Boolean> filas = new LinkedHashMap<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            guardar(filas);
+        }
+    }
+
+    @PostConstruct
+    void elegirSentencias() {
+        String baseDeDatos = jdbcTemplate.execute(
+                (ConnectionCallback<String>) conexion -> conexion.getMetaData().getDatabaseProductName());
+        guardarCambio = "MySQL".equalsIgnoreCase(baseDeDatos) ? GUARDAR_CAMBIO : GUARDAR_CAMBIO_SIN_ALIAS;
+    }
+
+    /**
+     * Anota una fila creada o modificada en la transacción actual.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registrar(Long empresaId, EntidadSincronizacion entidad, Long id) {
+        pendientes().filas.put(new Fila(empresaId, entidad, id), false);
+    }
+
+    /**
+     * Anota una fila eliminada en la transacción actual; queda como lápida para los clientes.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registrarEliminado(Long empresaId, EntidadSincronizacion entidad, Long id) {
+        pendientes().filas.put(new Fila(empresaId, entidad, id), true);
+    }
+
+    /**
+     * Cambios de la empresa posteriores a la versión {@code desde}. La página nunca corta una
+     * versión: si la última no entra se deja para la siguiente llamada, salvo que ocupe la
+     * página entera, en cuyo caso se entrega completa aunque supere el límite.
+     */
+    @Transactional(readOnly = true)
+    public SincronizacionDTO cambios(Long desde, Integer limite) {
+        Long empresaId = TenantContext.getCurrentTenant();
+        int tamanio = Paginacion.limite(limite);
+        long version = desde != null ? desde : 0;
+        if (version < 0) {
+            throw new BadRequestException("La versión no puede ser negativa");
+        }
+
+        List<CambioSincronizacion> filas = cambioRepository.findDesde(empresaId, version, Limit.of(tamanio + 1));
+        boolean hayMas = filas.size() > tamanio;
+        List<CambioSincronizacion> pagina = hayMas ? versionesCompletas(empresaId, filas, tamanio) : filas;
+
+        Map<EntidadSincronizacion, List<Long>> modificadas = new EnumMap<>(EntidadSincronizacion.class);
+        List<SincronizacionEliminadoDTO> eliminados = new ArrayList<>();
+        for (CambioSincronizacion cambio : pagina) {
+            if (Boolean.TRUE.equals(cambio.getEliminado())) {
+                eliminados.add(SincronizacionEliminadoDTO.builder()
+                        .entidad(cambio.getId().getEntidad())
+                        .id(cambio.getId().getEntidadId())
+                        .build());
+            } else {
+                modificadas.computeIfAbsent(cambio.getId().getEntidad(), e -> new ArrayList<>())
+                        .add(cambio.getId().getEntidadId());
+            }
+        }
+
+        // Las filas se leen en la misma transacción de solo lectura que los cambios, así que
+        // corresponden a la misma foto de la base de datos
+        return SincronizacionDTO.builder()
+                .version(pagina.isEmpty() ? version : pagina.get(pagina.size() - 1).getVersion())
+                .hayMas(hayMas)
+                .productos(cargar(modificadas, EntidadSincronizacion.PRODUCTO,
+                        ids -> productoRepository.findByIdInAndEmpresaId(ids, empresaId).stream()
+                                .map(ProductoService::toDTOSinVariantes)
+                                .toList()))
+                .variantes(cargar(modificadas, EntidadSincronizacion.VARIANTE,
+                        ids -> varianteRepository.findAllWithProductoByIdIn(ids, empresaId).stream()
+                                .map(VarianteService::toDTO)
+                                .toList()))
+                .lotes(cargar(modificadas, EntidadSincronizacion.LOTE,
+                        ids -> loteRepository.findByIdInAndEmpresaId(ids, empresaId).stream()
+                                .map(LoteService::toDTO)
+                                .toList()))
+                .stock(cargar(modificadas, EntidadSincronizacion.STOCK,
+                        ids -> stockAlmacenRepository.findAllDTOByIdIn(ids, empresaId)))
+                .eliminados(eliminados)
+                .build();
+    }
+
+    private List<CambioSincronizacion> versionesCompletas(Long empresaId, List<CambioSincronizacion> filas,
+            int tamanio) {
+        // La fila extra indica la primera versión que no entra completa en la página
+        long siguiente = filas.get(tamanio).getVersion();
+        List<CambioSincronizacion> pagina = filas.subList(0, tamanio).stream()
+                .filter(cambio -> cambio.getVersion() < siguiente)
+                .toList();
+        return pagina.isEmpty() ? cambioRepository.findByVersion(empresaId, siguiente) : pagina;
+    }
+
+    private static <T> List<T> cargar(Map<EntidadSincronizacion, List<Long>> modificadas,
+            EntidadSincronizacion entidad, Function<List<Long>, List<T>> lectura) {
+        List<Long> ids = modificadas.get(entidad);
+        return ids == null ? List.of() : lectura.apply(ids);
+    }
+
+    private Pendientes pendientes() {
+        for (TransactionSynchronization sincronizacion : TransactionSynchronizationManager.getSynchronizations()) {
+            if (sincronizacion instanceof Pendientes pendientes) {
+                return pendientes;
+            }
+        }
+        Pendientes pendientes = new Pendientes();
+        TransactionSynchronizationManager.registerSynchronization(pendientes);
+        return pendientes;
+    }
+
+    private void guardar(Map<Fila, Boolean> filas) {
+        if (filas.isEmpty()) {
+            return;
+        }
+        // Las escrituras pendientes de Hibernate salen antes de bloquear el contador
+        versionRepository.flush();
+
+        // Empresas en orden de id: dos transacciones que tocan las mismas no se cruzan
+        Map<Long, List<Map.Entry<Fila, Boolean>>> porEmpresa = new TreeMap<>();
+        filas.entrySet().forEach(fila -> porEmpresa
+                .computeIfAbsent(fila.getKey().empresaId(), id -> new ArrayList<>())
+                .add(fila));
+
+        porEmpresa.forEach((empresaId, cambios) -> {
+            versionRepository.incrementar(empresaId);
+            Long version = versionRepository.findVersion(empresaId);
+            jdbcTemplate.batchUpdate(guardarCambio, cambios, cambios.size(), (ps, cambio) -> {
+                ps.setLong(1, empresaId);
+                ps.setString(2, cambio.getKey().entidad().name());
+                ps.setLong(3, cambio.getKey().id());
+                ps.setLong(4, version);
+                ps.setBoolean(5, cambio.getValue());
+            });
+        });
+    }
+}
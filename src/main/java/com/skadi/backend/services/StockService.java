@@ -1,15 +1,18 @@
 package com.skadi.backend.services;
 
+import com.skadi.backend.dto.DisponibilidadDTO;
+import com.skadi.backend.dto.DisponibilidadRequest;
+import com.skadi.backend.dto.PaginaDTO;
 import com.skadi.backend.dto.StockDTO;
-import com.skadi.backend.entities.StockAlmacen;
 import com.skadi.backend.repositories.StockAlmacenRepository;
 import com.skadi.backend.security.TenantContext;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -17,43 +20,24 @@ public class StockService {
 
     private final StockAlmacenRepository stockAlmacenRepository;
 
-    public List<StockDTO> findAll() {
+    @Transactional(readOnly = true)
+    public PaginaDTO<StockDTO> findAll(Long almacenId, Long varianteId, String cursor, Integer limite) {
         Long empresaId = TenantContext.getCurrentTenant();
-        return stockAlmacenRepository.findByEmpresaId(empresaId).stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
-    }
+        int tamanio = Paginacion.limite(limite);
 
-    public List<StockDTO> findByAlmacen(Long almacenId) {
-        Long empresaId = TenantContext.getCurrentTenant();
-        return stockAlmacenRepository.findByEmpresaIdAndAlmacenId(empresaId, almacenId).stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        List<StockDTO> stocks = stockAlmacenRepository.findPagina(empresaId, almacenId, varianteId,
+                Paginacion.leerCursorId(cursor), Limit.of(tamanio + 1));
+        return Paginacion.pagina(stocks, tamanio, stock -> stock, stock -> Paginacion.cursorId(stock.getId()));
     }
 
-    public List<StockDTO> findByVariante(Long varianteId) {
+    /**
+     * Cantidad disponible de cada variante por almacén en una sola consulta agrupada. Las
+     * variantes sin stock (o de otra empresa) no aparecen en el resultado.
+     */
+    @Transactional(readOnly = true)
+    public List<DisponibilidadDTO> findDisponibilidad(DisponibilidadRequest request) {
         Long empresaId = TenantContext.getCurrentTenant();
-        return stockAlmacenRepository.findByEmpresaIdAndVarianteId(empresaId, varianteId).stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
-    }
-
-    private StockDTO toDTO(StockAlmacen stock) {
-        BigDecimal valorTotal = stock.getCostoPromedio()
-                .multiply(BigDecimal.valueOf(stock.getStock()));
-
-        return StockDTO.builder()
-                .almacenId(stock.getAlmacen().getId())
-                .almacenNombre(stock.getAlmacen().getNombre())
-                .varianteId(stock.getVariante().getId())
-                .varianteNombre(stock.getVariante().getNombre())
-                .productoNombre(stock.getVariante().getProducto().getNombre())
-                .sku(stock.getVariante().getSku())
-                .loteId(stock.getLote() != null ? stock.getLote().getId() : null)
-                .codigoLote(stock.getLote() != null ? stock.getLote().getCodigoLote() : null)
-                .stock(stock.getStock())
-                .costoPromedio(stock.getCostoPromedio())
-                .valorTotal(valorTotal)
-                .build();
+        return stockAlmacenRepository.findDisponibilidad(empresaId, Set.copyOf(request.getVarianteIds()),
+                request.getAlmacenId());
     }
 }
@@ -7,6 +7,7 @@ import com.skadi.backend.exceptions.BadRequestException;
 import com.skadi.backend.exceptions.ResourceNotFoundException;
 import com.skadi.backend.repositories.EmpresaRepository;
 import com.skadi.backend.repositories.UsuarioRepository;
+import com.skadi.backend.security.RevocacionTokens;
 import com.skadi.backend.security.TenantContext;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -23,6 +24,7 @@ public class UsuarioService {
     private final UsuarioRepository usuarioRepository;
     private final EmpresaRepository empresaRepository;
     private final PasswordEncoder passwordEncoder;
+    private final RevocacionTokens revocacionTokens;
 
     public List<UsuarioDTO> findAll() {
         Long empresaId = TenantContext.getCurrentTenant();
@@ -73,12 +75,22 @@ public class UsuarioService {
             throw new BadRequestException("El username ya existe");
         }
 
+        boolean invalidaTokens = !usuario.getUsername().equals(dto.getUsername());
+
         usuario.setUsername(dto.getUsername());
         if (dto.getPassword() != null && !dto.getPassword().isEmpty()) {
             usuario.setPasswordHash(passwordEncoder.encode(dto.getPassword()));
+            invalidaTokens = true;
         }
-        if (dto.getRol() != null) {
+        if (dto.getRol() != null && !dto.getRol().equals(usuario.getRol())) {
             usuario.setRol(dto.getRol());
+            invalidaTokens = true;
+        }
+
+        // Los tokens emitidos antes del cambio llevan el rol o usuario anterior
+        if (invalidaTokens) {
+            usuario.setVersionToken(usuario.getVersionToken() + 1);
+            revocacionTokens.revocar(usuario.getId(), usuario.getVersionToken());
         }
 
         usuario = usuarioRepository.save(usuario);
@@ -92,6 +104,7 @@ public class UsuarioService {
                 .filter(u -> u.getEmpresa().getId().equals(empresaId))
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado"));
         usuarioRepository.delete(usuario);
+        revocacionTokens.revocarTodos(usuario.getId());
     }
 
     private UsuarioDTO toDTO(Usuario usuario) {
@@ -1,6 +1,9 @@
 package com.skadi.backend.services;
 
+import com.skadi.backend.dto.ProductoDTO;
 import com.skadi.backend.dto.VarianteDTO;
+import com.skadi.backend.dto.VarianteSkuDTO;
+import com.skadi.backend.entities.EntidadSincronizacion;
 import com.skadi.backend.entities.Producto;
 import com.skadi.backend.entities.ProductoVariante;
 import com.skadi.backend.exceptions.BadRequestException;
@@ -12,7 +15,12 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,67 +29,114 @@ public class VarianteService {
 
     private final ProductoVarianteRepository varianteRepository;
     private final ProductoRepository productoRepository;
+    private final CatalogoCache catalogoCache;
+    private final SincronizacionService sincronizacionService;
+
+    private static final int MAX_SKUS = 500;
 
     public List<VarianteDTO> findByProductoId(Long productoId) {
         Long empresaId = TenantContext.getCurrentTenant();
+        Optional<CatalogoCache.Catalogo> catalogo = catalogoCache.catalogo(empresaId);
+        if (catalogo.isPresent()) {
+            return Optional.ofNullable(catalogo.get().productos().get(productoId))
+                    .map(ProductoDTO::getVariantes)
+                    .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado"));
+        }
         // Verificar que el producto pertenece a la empresa
         productoRepository.findByIdAndEmpresaId(productoId, empresaId)
                 .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado"));
 
         return varianteRepository.findByProductoId(productoId).stream()
-                .map(this::toDTO)
+                .map(VarianteService::toDTO)
                 .collect(Collectors.toList());
     }
 
     public VarianteDTO findById(Long id) {
-        ProductoVariante variante = varianteRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Variante no encontrada"));
-
-        // Verificar tenant
         Long empresaId = TenantContext.getCurrentTenant();
-        if (!variante.getProducto().getEmpresa().getId().equals(empresaId)) {
-            throw new ResourceNotFoundException("Variante no encontrada");
+        Optional<CatalogoCache.Catalogo> catalogo = catalogoCache.catalogo(empresaId);
+        if (catalogo.isPresent()) {
+            return Optional.ofNullable(catalogo.get().variantes().get(id))
+                    .orElseThrow(() -> new ResourceNotFoundException("Variante no encontrada"));
         }
+        ProductoVariante variante = varianteRepository.findByIdAndEmpresaId(id, empresaId)
+                .orElseThrow(() -> new ResourceNotFoundException("Variante no encontrada"));
 
         return toDTO(variante);
     }
 
+    public VarianteSkuDTO findBySku(String sku) {
+        return findBySkus(List.of(sku)).stream()
+                .findFirst()
+                .orElseThrow(() -> new ResourceNotFoundException("Variante no encontrada"));
+    }
+
+    /**
+     * Variantes de la empresa con los SKU pedidos, en el mismo orden; los SKU que no existen
+     * se omiten. Se resuelve con el índice del catálogo en memoria.
+     */
+    public List<VarianteSkuDTO> findBySkus(List<String> skus) {
+        if (skus == null || skus.stream().anyMatch(sku -> sku == null || sku.isBlank())) {
+            throw new BadRequestException("Los SKU no pueden ser nulos ni estar vacíos");
+        }
+        if (skus.size() > MAX_SKUS) {
+            throw new BadRequestException("Se pueden buscar hasta " + MAX_SKUS + " SKU por consulta");
+        }
+        Long empresaId = TenantContext.getCurrentTenant();
+        Map<String, VarianteSkuDTO> indice = catalogoCache.catalogo(empresaId)
+                .map(CatalogoCache.Catalogo::skus)
+                .orElseGet(() -> buscarSkus(empresaId, skus));
+
+        return skus.stream()
+                .map(sku -> indice.get(CatalogoCache.claveSku(sku)))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // Empresa fuera de la caché del catálogo: una consulta por el índice idx_variantes_sku
+    private Map<String, VarianteSkuDTO> buscarSkus(Long empresaId, List<String> skus) {
+        Set<String> buscados = skus.stream().map(String::trim).collect(Collectors.toSet());
+        return varianteRepository.findAllWithProductoBySkuIn(buscados, empresaId).stream()
+                .sorted(Comparator.comparing(ProductoVariante::getId))
+                .collect(Collectors.toMap(v -> CatalogoCache.claveSku(v.getSku()), this::toSkuDTO,
+                        (primera, repetida) -> primera));
+    }
+
     @Transactional
     public VarianteDTO create(Long productoId, VarianteDTO dto) {
         Long empresaId = TenantContext.getCurrentTenant();
         Producto producto = productoRepository.findByIdAndEmpresaId(productoId, empresaId)
                 .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado"));
 
-        if (dto.getSku() != null && varianteRepository.existsBySku(dto.getSku())) {
+        if (dto.getSku() != null && varianteRepository.existsBySkuAndEmpresaId(dto.getSku(), empresaId)) {
             throw new BadRequestException("Ya existe una variante con ese SKU");
         }
 
         ProductoVariante variante = ProductoVariante.builder()
                 .producto(producto)
+                .empresa(producto.getEmpresa())
                 .nombre(dto.getNombre())
                 .sku(dto.getSku())
                 .precioCompra(dto.getPrecioCompra())
                 .precioVenta(dto.getPrecioVenta())
+                .stockMinimo(dto.getStockMinimo())
+                .puntoReorden(dto.getPuntoReorden())
                 .build();
 
         variante = varianteRepository.save(variante);
+        catalogoCache.invalidarProducto(empresaId, variante.getProducto().getId());
+        sincronizacionService.registrar(empresaId, EntidadSincronizacion.VARIANTE, variante.getId());
         return toDTO(variante);
     }
 
     @Transactional
     public VarianteDTO update(Long id, VarianteDTO dto) {
-        ProductoVariante variante = varianteRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Variante no encontrada"));
-
-        // Verificar tenant
         Long empresaId = TenantContext.getCurrentTenant();
-        if (!variante.getProducto().getEmpresa().getId().equals(empresaId)) {
-            throw new ResourceNotFoundException("Variante no encontrada");
-        }
+        ProductoVariante variante = varianteRepository.findByIdAndEmpresaId(id, empresaId)
+                .orElseThrow(() -> new ResourceNotFoundException("Variante no encontrada"));
 
-        // Verificar SKU duplicado si cambió
-        if (dto.getSku() != null && !dto.getSku().equals(variante.getSku()) &&
-                varianteRepository.existsBySku(dto.getSku())) {
+        // Verificar SKU duplicado en otra variante de la empresa
+        if (dto.getSku() != null &&
+                varianteRepository.existsBySkuAndEmpresaIdAndIdNot(dto.getSku(), empresaId, id)) {
             throw new BadRequestException("Ya existe una variante con ese SKU");
         }
 
@@ -89,26 +144,42 @@ public class VarianteService {
         variante.setSku(dto.getSku());
         variante.setPrecioCompra(dto.getPrecioCompra());
         variante.setPrecioVenta(dto.getPrecioVenta());
+        variante.setStockMinimo(dto.getStockMinimo());
+        variante.setPuntoReorden(dto.getPuntoReorden());
 
         variante = varianteRepository.save(variante);
+        catalogoCache.invalidarProducto(empresaId, variante.getProducto().getId());
+        sincronizacionService.registrar(empresaId, EntidadSincronizacion.VARIANTE, variante.getId());
         return toDTO(variante);
     }
 
     @Transactional
     public void delete(Long id) {
-        ProductoVariante variante = varianteRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Variante no encontrada"));
-
-        // Verificar tenant
         Long empresaId = TenantContext.getCurrentTenant();
-        if (!variante.getProducto().getEmpresa().getId().equals(empresaId)) {
-            throw new ResourceNotFoundException("Variante no encontrada");
-        }
+        ProductoVariante variante = varianteRepository.findByIdAndEmpresaId(id, empresaId)
+                .orElseThrow(() -> new ResourceNotFoundException("Variante no encontrada"));
 
+        // Los lotes se eliminan en cascada con la variante
+        variante.getLotes().forEach(lote -> sincronizacionService.registrarEliminado(empresaId,
+                EntidadSincronizacion.LOTE, lote.getId()));
+        sincronizacionService.registrarEliminado(empresaId, EntidadSincronizacion.VARIANTE, id);
         varianteRepository.delete(variante);
+        catalogoCache.invalidarProducto(empresaId, variante.getProducto().getId());
+    }
+
+    private VarianteSkuDTO toSkuDTO(ProductoVariante variante) {
+        return VarianteSkuDTO.builder()
+                .sku(variante.getSku())
+                .varianteId(variante.getId())
+                .nombre(variante.getNombre())
+                .productoId(variante.getProducto().getId())
+                .productoNombre(variante.getProducto().getNombre())
+                .precioVenta(variante.getPrecioVenta())
+                .requiereLote(variante.getProducto().getRequiereLote())
+                .build();
     }
 
-    private VarianteDTO toDTO(ProductoVariante variante) {
+    static VarianteDTO toDTO(ProductoVariante variante) {
         return VarianteDTO.builder()
                 .id(variante.getId())
                 .productoId(variante.getProducto().getId())
@@ -116,6 +187,8 @@ public class VarianteService {
                 .sku(variante.getSku())
                 .precioCompra(variante.getPrecioCompra())
                 .precioVenta(variante.getPrecioVenta())
+                .stockMinimo(variante.getStockMinimo())
+                .puntoReorden(variante.getPuntoReorden())
                 .build();
     }
 }
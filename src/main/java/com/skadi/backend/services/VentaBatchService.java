@@ -0,0 +1,228 @@
+package com.skadi.backend.services;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skadi.backend.dto.VentaBatchResultadoDTO;
+import com.skadi.backend.dto.VentaDTO;
+import com.skadi.backend.entities.Almacen;
+import com.skadi.backend.entities.Empresa;
+import com.skadi.backend.entities.Usuario;
+import com.skadi.backend.entities.Venta;
+import com.skadi.backend.exceptions.BadRequestException;
+import com.skadi.backend.exceptions.InsufficientStockException;
+import com.skadi.backend.exceptions.ResourceNotFoundException;
+import com.skadi.backend.security.TenantContext;
+import com.skadi.backend.security.UsuarioPrincipal;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Carga masiva de ventas (terminales que sincronizan ventas registradas sin conexión).
+ * El cuerpo se lee venta por venta con el parser de Jackson, sin cargar el arreglo completo.
+ * Las ventas se agrupan en bloques de {@code ventas.batch.tamanio-bloque}; cada bloque se
+ * registra por almacén en una sola transacción, que se repite si pierde un deadlock. Si una
+ * venta del bloque falla, las ventas de ese almacén se reintentan una por una para aislar
+ * el error.
+ * <p>
+ * Un elemento que no es un objeto, o cuyos valores no se pueden convertir (una fecha o una
+ * cantidad inválida), se informa como error de esa posición y la lectura sigue. Si el cuerpo está
+ * mal formado o termina antes de cerrar el arreglo, la lectura se detiene: las ventas ya
+ * leídas se registran y la respuesta incluye el error en la posición donde se detuvo.
+ */
+@Service
+@RequiredArgsConstructor
+public class VentaBatchService {
+
+    private final VentaService ventaService;
+    private final ReferenciaService referenciaService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ReintentoBloqueos reintentoBloqueos;
+
+    @Value("${ventas.batch.tamanio-bloque:100}")
+    private int tamanioBloque;
+
+    public List<VentaBatchResultadoDTO> registrar(InputStream body) throws IOException {
+        Long empresaId = TenantContext.getCurrentTenant();
+        Long usuarioId = UsuarioPrincipal.actual().id();
+
+        List<VentaBatchResultadoDTO> resultados = new ArrayList<>();
+        Map<Integer, VentaDTO> bloque = new LinkedHashMap<>();
+        int indice = 0;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new BadRequestException("Se esperaba un arreglo de ventas");
+            }
+
+            // Un error de formato corta la lectura: las ventas leídas hasta ahí se registran igual y
+            // el error se informa en la posición donde se detuvo
+            String interrupcion = null;
+            try {
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                        resultados.add(resultado(indice++, null, null, "Se esperaba un objeto de venta"));
+                        continue;
+                    }
+
+                    // El elemento se lee entero antes de convertirlo: un valor inválido solo
+                    // afecta a esta venta y el parser queda al final del objeto
+                    JsonNode nodo = parser.readValueAsTree();
+                    VentaDTO dto;
+                    try {
+                        dto = objectMapper.treeToValue(nodo, VentaDTO.class);
+                    } catch (JsonMappingException e) {
+                        resultados.add(VentaBatchResultadoDTO.builder()
+                                .indice(indice++)
+                                .numeroDocumento(nodo.path("numeroDocumento").isTextual()
+                                        ? nodo.get("numeroDocumento").asText() : null)
+                                .error(errorConversion(e))
+                                .build());
+                        continue;
+                    }
+                    String error = validar(dto);
+                    if (error != null) {
+                        resultados.add(resultado(indice, dto, null, error));
+                    } else {
+                        bloque.put(indice, dto);
+                    }
+                    indice++;
+
+                    if (bloque.size() >= tamanioBloque) {
+                        resultados.addAll(procesarBloque(empresaId, usuarioId, bloque));
+                        bloque.clear();
+                    }
+                }
+                if (parser.nextToken() != null) {
+                    interrupcion = "Contenido adicional después del arreglo de ventas";
+                }
+            } catch (JsonEOFException e) {
+                interrupcion = "El arreglo de ventas terminó sin cerrarse";
+            } catch (JsonProcessingException e) {
+                interrupcion = "Formato inválido: " + e.getOriginalMessage();
+            }
+
+            if (!bloque.isEmpty()) {
+                resultados.addAll(procesarBloque(empresaId, usuarioId, bloque));
+            }
+            if (interrupcion != null) {
+                resultados.add(resultado(indice, null, null, interrupcion));
+            }
+        }
+
+        resultados.sort(Comparator.comparing(VentaBatchResultadoDTO::getIndice));
+        return resultados;
+    }
+
+    // Campo con el valor inválido, por ejemplo "detalles[1].cantidad", sin el detalle interno de Jackson
+    private static String errorConversion(JsonMappingException e) {
+        StringBuilder campo = new StringBuilder();
+        for (JsonMappingException.Reference referencia : e.getPath()) {
+            if (referencia.getFieldName() != null) {
+                campo.append(campo.isEmpty() ? "" : ".").append(referencia.getFieldName());
+            } else if (referencia.getIndex() >= 0) {
+                campo.append('[').append(referencia.getIndex()).append(']');
+            }
+        }
+        return campo.isEmpty() ? "Venta con formato inválido" : "Valor inválido en " + campo;
+    }
+
+    private String validar(VentaDTO dto) {
+        Set<ConstraintViolation<VentaDTO>> violaciones = validator.validate(dto);
+        if (violaciones.isEmpty()) {
+            return null;
+        }
+        return violaciones.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private List<VentaBatchResultadoDTO> procesarBloque(Long empresaId, Long usuarioId,
+            Map<Integer, VentaDTO> bloque) {
+        Map<Long, Map<Integer, VentaDTO>> porAlmacen = new LinkedHashMap<>();
+        bloque.forEach((indice, dto) -> porAlmacen
+                .computeIfAbsent(dto.getAlmacenId(), id -> new LinkedHashMap<>())
+                .put(indice, dto));
+
+        List<VentaBatchResultadoDTO> resultados = new ArrayList<>();
+        porAlmacen.forEach((almacenId, ventas) -> {
+            try {
+                List<Long> ids = reintentoBloqueos.ejecutar("venta_batch", () -> registrarEnTransaccion(
+                        empresaId, usuarioId, almacenId, new ArrayList<>(ventas.values())));
+                int i = 0;
+                for (Map.Entry<Integer, VentaDTO> venta : ventas.entrySet()) {
+                    resultados.add(resultado(venta.getKey(), venta.getValue(), ids.get(i++), null));
+                }
+            } catch (RuntimeException e) {
+                // Reintentar una por una para registrar las válidas y reportar las que fallan
+                ventas.forEach((indice, dto) -> resultados.add(registrarIndividual(empresaId, usuarioId, indice, dto)));
+            }
+        });
+        return resultados;
+    }
+
+    private VentaBatchResultadoDTO registrarIndividual(Long empresaId, Long usuarioId, Integer indice,
+            VentaDTO dto) {
+        try {
+            List<Long> ids = reintentoBloqueos.ejecutar("venta_batch", () -> registrarEnTransaccion(
+                    empresaId, usuarioId, dto.getAlmacenId(), List.of(dto)));
+            return resultado(indice, dto, ids.get(0), null);
+        } catch (RuntimeException e) {
+            return resultado(indice, dto, null, mensaje(e));
+        }
+    }
+
+    // Mismos mensajes que devuelve GlobalExceptionHandler para una venta individual
+    private static String mensaje(RuntimeException e) {
+        if (e instanceof BadRequestException || e instanceof ResourceNotFoundException
+                || e instanceof InsufficientStockException) {
+            return e.getMessage();
+        }
+        if (e instanceof PessimisticLockingFailureException) {
+            return "La venta no se pudo registrar por bloqueos concurrentes; vuelva a enviarla";
+        }
+        return "Error interno del servidor";
+    }
+
+    private List<Long> registrarEnTransaccion(Long empresaId, Long usuarioId, Long almacenId,
+            List<VentaDTO> ventas) {
+        Empresa empresa = referenciaService.empresa(empresaId);
+        Almacen almacen = referenciaService.almacen(empresaId, almacenId);
+        Usuario usuario = referenciaService.usuario(usuarioId);
+
+        return ventaService.registrarVentas(empresa, almacen, usuario, ventas).stream()
+                .map(Venta::getId)
+                .toList();
+    }
+
+    private VentaBatchResultadoDTO resultado(Integer indice, VentaDTO dto, Long ventaId, String error) {
+        return VentaBatchResultadoDTO.builder()
+                .indice(indice)
+                .numeroDocumento(dto != null ? dto.getNumeroDocumento() : null)
+                .ventaId(ventaId)
+                .error(error)
+                .build();
+    }
+}
@@ -1,5 +1,10 @@
 package com.skadi.backend.services;
 
+import com.skadi.backend.dto.CotizacionDTO;
+import com.skadi.backend.dto.CotizacionLineaDTO;
+import com.skadi.backend.dto.CotizacionLoteDTO;
+import com.skadi.backend.dto.PaginaDTO;
+import com.skadi.backend.dto.StockEventoDTO;
 import com.skadi.backend.dto.VentaDTO;
 import com.skadi.backend.dto.VentaDetalleDTO;
 import com.skadi.backend.entities.*;
@@ -8,16 +13,28 @@ import com.skadi.backend.exceptions.InsufficientStockException;
 import com.skadi.backend.exceptions.ResourceNotFoundException;
 import com.skadi.backend.repositories.*;
 import com.skadi.backend.security.TenantContext;
+import com.skadi.backend.security.UsuarioPrincipal;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,19 +42,64 @@ import java.util.stream.Collectors;
 public class VentaService {
 
         private final VentaRepository ventaRepository;
-        private final AlmacenRepository almacenRepository;
+        private final ReferenciaService referenciaService;
         private final ProductoVarianteRepository varianteRepository;
         private final LoteRepository loteRepository;
         private final StockAlmacenRepository stockAlmacenRepository;
         private final KardexMovimientoRepository kardexRepository;
-        private final EmpresaRepository empresaRepository;
-        private final UsuarioRepository usuarioRepository;
+        private final KardexSaldoService kardexSaldoService;
+        private final ReintentoBloqueos reintentoBloqueos;
+        private final AsignadorLotes asignadorLotes;
+        private final MeterRegistry meterRegistry;
+        private final SincronizacionService sincronizacionService;
+        private final NotificadorStock notificadorStock;
+
+        // Cantidad pedida de una variante (y del lote indicado, si lo hay) sumando las líneas
+        record Demanda(ProductoVariante variante, Lote lote, boolean requiereLote) {
+        }
+
+        // Primero las demandas con lote indicado: si una demanda sin lote se asignara antes,
+        // su FEFO podría consumir el lote que otra línea pidió explícitamente
+        static final Comparator<Demanda> ORDEN_DEMANDAS = Comparator
+                        .comparing((Demanda d) -> d.lote() == null)
+                        .thenComparing(d -> d.variante().getId())
+                        .thenComparing(d -> d.lote() != null ? d.lote().getId() : 0L);
+
+        // Cantidad a sacar de una fila de stock para una demanda
+        private record Asignacion(ProductoVariante variante, StockAlmacen stock, int cantidad) {
+        }
 
-        public List<VentaDTO> findAll() {
+        // Venta a registrar junto con el usuario que la hizo
+        private record Pedido(VentaDTO dto, Usuario usuario) {
+        }
+
+        // Venta registrada, o el error por el que se rechazó
+        private record Registro(Venta venta, RuntimeException error) {
+        }
+
+        /** Venta de un grupo y el usuario que la envió */
+        public record SolicitudVenta(VentaDTO venta, Long usuarioId) {
+        }
+
+        /** Resultado individual de una venta del grupo: la venta registrada o el error */
+        public record ResultadoVenta(VentaDTO venta, RuntimeException error) {
+        }
+
+        @Transactional(readOnly = true)
+        public PaginaDTO<VentaDTO> findAll(Long almacenId, LocalDateTime desde, LocalDateTime hasta,
+                        String cliente, String numeroDocumento, String cursor, Integer limite) {
                 Long empresaId = TenantContext.getCurrentTenant();
-                return ventaRepository.findByEmpresaId(empresaId).stream()
-                                .map(this::toDTO)
-                                .collect(Collectors.toList());
+                int tamanio = Paginacion.limite(limite);
+                Paginacion.CursorFecha desdeCursor = Paginacion.leerCursorFecha(cursor);
+
+                // Primero los ids de la página por índice y luego los documentos con sus detalles
+                List<Long> ids = ventaRepository.findIdsPagina(empresaId, almacenId, desde, hasta, cliente,
+                                numeroDocumento, desdeCursor.fecha(), desdeCursor.id(), Limit.of(tamanio + 1));
+                Map<Long, Venta> ventas = ventaRepository.findAllWithDetallesByIdIn(ids).stream()
+                                .collect(Collectors.toMap(Venta::getId, Function.identity()));
+
+                return Paginacion.pagina(ids.stream().map(ventas::get).toList(), tamanio, this::toDTO,
+                                venta -> Paginacion.cursorFecha(venta.getFecha(), venta.getId()));
         }
 
         public VentaDTO findById(Long id) {
@@ -47,20 +109,225 @@ public class VentaService {
                 return toDTO(venta);
         }
 
-        @Transactional
         public VentaDTO create(VentaDTO dto) {
                 Long empresaId = TenantContext.getCurrentTenant();
+                Long usuarioId = UsuarioPrincipal.actual().id();
+
+                // Si la venta pierde un deadlock contra otra se repite completa en una transacción nueva
+                return reintentoBloqueos.ejecutar("venta", () -> {
+                        Empresa empresa = referenciaService.empresa(empresaId);
 
-                Empresa empresa = empresaRepository.findById(empresaId)
-                                .orElseThrow(() -> new ResourceNotFoundException("Empresa no encontrada"));
+                        Almacen almacen = referenciaService.almacen(empresaId, dto.getAlmacenId());
 
-                Almacen almacen = almacenRepository.findByIdAndEmpresaId(dto.getAlmacenId(), empresaId)
-                                .orElseThrow(() -> new ResourceNotFoundException("Almacén no encontrado"));
+                        Usuario usuario = referenciaService.usuario(usuarioId);
 
-                String username = SecurityContextHolder.getContext().getAuthentication().getName();
-                Usuario usuario = usuarioRepository.findByUsername(username)
-                                .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado"));
+                        return toDTO(registrarVentas(empresa, almacen, usuario, List.of(dto)).get(0));
+                });
+        }
+
+        /**
+         * Cotiza la venta sin registrarla: calcula con el mismo plan de asignación que la venta
+         * los lotes de los que saldría la mercadería, el stock faltante y los totales. Lee el
+         * stock sin bloquearlo y no escribe nada, así que el resultado puede cambiar antes de
+         * registrar la venta.
+         */
+        @Transactional(readOnly = true)
+        public CotizacionDTO cotizar(VentaDTO dto) {
+                Long empresaId = TenantContext.getCurrentTenant();
+                Long almacenId = referenciaService.almacen(empresaId, dto.getAlmacenId()).getId();
+
+                Map<Long, ProductoVariante> variantes = cargarVariantes(empresaId, dto.getDetalles());
+                Map<Long, Lote> lotes = cargarLotes(empresaId, dto.getDetalles());
+                List<Demanda> lineas = dto.getDetalles().stream()
+                                .map(detalleDTO -> demanda(detalleDTO, variantes, lotes))
+                                .toList();
+
+                Map<Long, List<AsignadorLotes.LoteEnCola>> colas = asignadorLotes.colas(almacenId, variantes.keySet());
+                CotizacionDTO cotizacion = cotizar(dto, almacenId, lineas, colas);
+                if (!cotizacion.getDisponible()) {
+                        // Igual que en la venta, el faltante se confirma con las colas leídas de la base
+                        cotizacion = cotizar(dto, almacenId, lineas,
+                                        asignadorLotes.recargar(almacenId, variantes.keySet()));
+                }
+                return cotizacion;
+        }
 
+        private CotizacionDTO cotizar(VentaDTO dto, Long almacenId, List<Demanda> lineas,
+                        Map<Long, List<AsignadorLotes.LoteEnCola>> colas) {
+                List<Long> ids = colas.values().stream()
+                                .flatMap(List::stream)
+                                .map(AsignadorLotes.LoteEnCola::stockId)
+                                .toList();
+                Map<Long, StockAlmacen> stocks = ids.isEmpty() ? Map.of()
+                                : stockAlmacenRepository.findAllWithLoteByIdIn(ids).stream()
+                                                .collect(Collectors.toMap(StockAlmacen::getId, Function.identity()));
+                Map<Long, Integer> disponibles = stocks.values().stream()
+                                .collect(Collectors.toMap(StockAlmacen::getId, StockAlmacen::getStock));
+
+                Map<Demanda, Integer> demandas = new TreeMap<>(ORDEN_DEMANDAS);
+                for (int i = 0; i < lineas.size(); i++) {
+                        demandas.merge(lineas.get(i), dto.getDetalles().get(i).getCantidad(), Integer::sum);
+                }
+                // Las porciones de cada demanda se reparten entre sus líneas en el orden enviado
+                Map<Demanda, Deque<AsignadorLotes.PorcionLote>> plan = new TreeMap<>(ORDEN_DEMANDAS);
+                planificar(demandas, colas, disponibles)
+                                .forEach((demanda, porciones) -> plan.put(demanda, new ArrayDeque<>(porciones)));
+
+                List<CotizacionLineaDTO> lineasDTO = new ArrayList<>();
+                BigDecimal total = BigDecimal.ZERO;
+                boolean disponible = true;
+                for (int i = 0; i < lineas.size(); i++) {
+                        VentaDetalleDTO detalleDTO = dto.getDetalles().get(i);
+                        List<AsignadorLotes.PorcionLote> porciones = tomar(plan.get(lineas.get(i)),
+                                        detalleDTO.getCantidad());
+
+                        int asignada = porciones.stream().mapToInt(AsignadorLotes.PorcionLote::cantidad).sum();
+                        BigDecimal subtotal = detalleDTO.getPrecioUnitario()
+                                        .multiply(BigDecimal.valueOf(detalleDTO.getCantidad()));
+                        lineasDTO.add(CotizacionLineaDTO.builder()
+                                        .varianteId(detalleDTO.getVarianteId())
+                                        .loteId(detalleDTO.getLoteId())
+                                        .cantidad(detalleDTO.getCantidad())
+                                        .cantidadAsignada(asignada)
+                                        .faltante(detalleDTO.getCantidad() - asignada)
+                                        .precioUnitario(detalleDTO.getPrecioUnitario())
+                                        .subtotal(subtotal)
+                                        .lotes(porciones.stream()
+                                                        .map(p -> toCotizacionLoteDTO(stocks.get(p.stockId()), p.cantidad()))
+                                                        .toList())
+                                        .build());
+                        total = total.add(subtotal);
+                        disponible &= asignada == detalleDTO.getCantidad();
+                }
+
+                return CotizacionDTO.builder()
+                                .almacenId(almacenId)
+                                .disponible(disponible)
+                                .total(total)
+                                .lineas(lineasDTO)
+                                .build();
+        }
+
+        // Saca hasta cantidad unidades del frente de las porciones, partiendo la última si sobra
+        private static List<AsignadorLotes.PorcionLote> tomar(Deque<AsignadorLotes.PorcionLote> porciones,
+                        int cantidad) {
+                List<AsignadorLotes.PorcionLote> tomadas = new ArrayList<>();
+                while (cantidad > 0 && !porciones.isEmpty()) {
+                        AsignadorLotes.PorcionLote porcion = porciones.poll();
+                        int parte = Math.min(cantidad, porcion.cantidad());
+                        tomadas.add(new AsignadorLotes.PorcionLote(porcion.stockId(), porcion.loteId(), parte));
+                        if (parte < porcion.cantidad()) {
+                                porciones.push(new AsignadorLotes.PorcionLote(porcion.stockId(), porcion.loteId(),
+                                                porcion.cantidad() - parte));
+                        }
+                        cantidad -= parte;
+                }
+                return tomadas;
+        }
+
+        private CotizacionLoteDTO toCotizacionLoteDTO(StockAlmacen stock, int cantidad) {
+                Lote lote = stock.getLote();
+                return CotizacionLoteDTO.builder()
+                                .loteId(lote != null ? lote.getId() : null)
+                                .codigoLote(lote != null ? lote.getCodigoLote() : null)
+                                .fechaVencimiento(lote != null ? lote.getFechaVencimiento() : null)
+                                .cantidad(cantidad)
+                                .build();
+        }
+
+        /**
+         * Registra varias ventas de un mismo almacén dentro de la transacción actual.
+         * Variantes, lotes y stock se resuelven una sola vez para todas las ventas, y el
+         * stock consumido por una venta deja de estar disponible para las siguientes.
+         * Las filas de stock se bloquean antes de asignar, todas juntas y en orden de id, así
+         * que la verificación de stock se hace sobre valores que nadie más puede cambiar.
+         */
+        @Transactional(propagation = Propagation.MANDATORY)
+        public List<Venta> registrarVentas(Empresa empresa, Almacen almacen, Usuario usuario, List<VentaDTO> dtos) {
+                List<Pedido> pedidos = dtos.stream().map(dto -> new Pedido(dto, usuario)).toList();
+                return registrar(empresa, almacen, pedidos, false).stream()
+                                .map(Registro::venta)
+                                .toList();
+        }
+
+        /**
+         * Igual que {@link #registrarVentas}, pero cada venta tiene su propio resultado: una
+         * venta sin stock suficiente o con una variante o lote inexistente no se registra y
+         * las demás del grupo siguen adelante con el stock que quedó.
+         */
+        @Transactional(propagation = Propagation.MANDATORY)
+        public List<ResultadoVenta> registrarGrupo(Long empresaId, Long almacenId, List<SolicitudVenta> solicitudes) {
+                Empresa empresa = referenciaService.empresa(empresaId);
+                Almacen almacen = referenciaService.almacen(empresaId, almacenId);
+                List<Pedido> pedidos = solicitudes.stream()
+                                .map(s -> new Pedido(s.venta(), referenciaService.usuario(s.usuarioId())))
+                                .toList();
+
+                return registrar(empresa, almacen, pedidos, true).stream()
+                                .map(r -> new ResultadoVenta(r.venta() != null ? toDTO(r.venta()) : null, r.error()))
+                                .toList();
+        }
+
+        private List<Registro> registrar(Empresa empresa, Almacen almacen, List<Pedido> pedidos,
+                        boolean aislarFallos) {
+                // Resolver variantes, lotes y stock de todas las líneas de una vez
+                List<VentaDetalleDTO> detalles = pedidos.stream()
+                                .flatMap(p -> p.dto().getDetalles().stream())
+                                .toList();
+                Map<Long, ProductoVariante> variantes = cargarVariantes(empresa.getId(), detalles);
+                Map<Long, Lote> lotes = cargarLotes(empresa.getId(), detalles);
+                VistaStock vista = new VistaStock(almacen.getId(), variantes.keySet());
+                // Los movimientos se insertan juntos al final para que Hibernate los agrupe en lotes JDBC
+                List<KardexMovimiento> movimientos = new ArrayList<>();
+
+                List<Registro> registros = new ArrayList<>();
+                for (Pedido pedido : pedidos) {
+                        try {
+                                registros.add(new Registro(crearVentaVerificando(pedido, empresa, almacen, variantes,
+                                                lotes, vista, movimientos), null));
+                        } catch (InsufficientStockException | ResourceNotFoundException | BadRequestException e) {
+                                if (!aislarFallos) {
+                                        throw e;
+                                }
+                                registros.add(new Registro(null, e));
+                        }
+                }
+
+                ventaRepository.saveAll(registros.stream()
+                                .map(Registro::venta)
+                                .filter(Objects::nonNull)
+                                .toList());
+                kardexRepository.saveAll(movimientos);
+                asignadorLotes.retirarAgotados(almacen.getId(), vista.agotados());
+                notificadorStock.publicar(empresa.getId(), vista.cambios(movimientos));
+                return registros;
+        }
+
+        // Con la cola en caché puede faltar stock que ingresó por otra instancia: antes de
+        // rechazar la venta se relee la cola desde la base, una vez por transacción
+        private Venta crearVentaVerificando(Pedido pedido, Empresa empresa, Almacen almacen,
+                        Map<Long, ProductoVariante> variantes, Map<Long, Lote> lotes, VistaStock vista,
+                        List<KardexMovimiento> movimientos) {
+                try {
+                        return crearVenta(pedido.dto(), empresa, almacen, pedido.usuario(), variantes, lotes, vista,
+                                        movimientos);
+                } catch (InsufficientStockException e) {
+                        if (!vista.verificar()) {
+                                throw e;
+                        }
+                        return crearVenta(pedido.dto(), empresa, almacen, pedido.usuario(), variantes, lotes, vista,
+                                        movimientos);
+                }
+        }
+
+        /**
+         * Arma la venta y asigna su stock sobre una copia de las cantidades disponibles; solo si
+         * todas las líneas alcanzan se descuenta el stock y se generan los movimientos. Una
+         * venta rechazada no deja escrituras ni consume stock de la vista compartida.
+         */
+        private Venta crearVenta(VentaDTO dto, Empresa empresa, Almacen almacen, Usuario usuario,
+                        Map<Long, ProductoVariante> variantes, Map<Long, Lote> lotes, VistaStock vista,
+                        List<KardexMovimiento> movimientos) {
                 // Crear venta
                 Venta venta = Venta.builder()
                                 .empresa(empresa)
@@ -73,33 +340,21 @@ public class VentaService {
                                 .build();
 
                 BigDecimal totalVenta = BigDecimal.ZERO;
+                // Líneas repetidas de la misma variante y lote se asignan como una sola
+                Map<Demanda, Integer> demandas = new TreeMap<>(ORDEN_DEMANDAS);
 
                 // Procesar detalles
                 for (VentaDetalleDTO detalleDTO : dto.getDetalles()) {
-                        ProductoVariante variante = varianteRepository.findById(detalleDTO.getVarianteId())
-                                        .orElseThrow(() -> new ResourceNotFoundException(
-                                                        "Variante no encontrada: " + detalleDTO.getVarianteId()));
-
-                        Lote lote = null;
-                        if (detalleDTO.getLoteId() != null) {
-                                lote = loteRepository.findById(detalleDTO.getLoteId())
-                                                .orElseThrow(() -> new ResourceNotFoundException("Lote no encontrado"));
-                        }
-
-                        // Aplicar FIFO para obtener el stock
-                        // Si el producto requiere lote y no se especificó, el FIFO solo usará stocks
-                        // con lote
-                        boolean requiereLote = Boolean.TRUE.equals(variante.getProducto().getRequiereLote());
-                        procesarSalidaFIFO(empresa, almacen, variante,
-                                        lote, usuario, detalleDTO.getCantidad(), requiereLote);
+                        Demanda demanda = demanda(detalleDTO, variantes, lotes);
+                        demandas.merge(demanda, detalleDTO.getCantidad(), Integer::sum);
 
                         BigDecimal subtotal = detalleDTO.getPrecioUnitario()
                                         .multiply(BigDecimal.valueOf(detalleDTO.getCantidad()));
 
                         VentaDetalle detalle = VentaDetalle.builder()
                                         .venta(venta)
-                                        .variante(variante)
-                                        .lote(lote)
+                                        .variante(demanda.variante())
+                                        .lote(demanda.lote())
                                         .cantidad(detalleDTO.getCantidad())
                                         .precioUnitario(detalleDTO.getPrecioUnitario())
                                         .subtotal(subtotal)
@@ -109,94 +364,217 @@ public class VentaService {
                         totalVenta = totalVenta.add(subtotal);
                 }
 
-                venta.setTotal(totalVenta);
-                venta = ventaRepository.save(venta);
+                // Aplicar FEFO/FIFO para obtener el stock
+                Map<Long, Integer> disponibles = new HashMap<>(vista.disponibles);
+                List<Asignacion> asignaciones = new ArrayList<>();
+                planificar(demandas, vista.colas, disponibles).forEach((demanda, porciones) -> {
+                        // Verificar que hay stock suficiente
+                        int cantidadRequerida = demandas.get(demanda);
+                        int stockTotal = porciones.stream().mapToInt(AsignadorLotes.PorcionLote::cantidad).sum();
+                        if (stockTotal < cantidadRequerida) {
+                                throw new InsufficientStockException(String.format(
+                                                "Stock insuficiente para variante %s. Disponible: %d, Requerido: %d",
+                                                demanda.variante().getNombre(), stockTotal, cantidadRequerida));
+                        }
+                        porciones.forEach(porcion -> asignaciones.add(new Asignacion(demanda.variante(),
+                                        vista.stocks.get(porcion.stockId()), porcion.cantidad())));
+                });
+
+                vista.disponibles.putAll(disponibles);
+                // Se descuenta en orden de variante y fila para que los saldos de kardex se
+                // bloqueen siempre en el mismo orden
+                asignaciones.sort(Comparator.comparing((Asignacion a) -> a.variante().getId())
+                                .thenComparing(a -> a.stock().getId()));
+                for (Asignacion asignacion : asignaciones) {
+                        descontar(empresa, almacen, usuario, asignacion, movimientos);
+                }
 
-                return toDTO(venta);
+                venta.setTotal(totalVenta);
+                return venta;
         }
 
         /**
-         * Procesa la salida usando FIFO (First In, First Out)
-         * Primero sale el stock de los lotes más antiguos
-         * 
-         * @param requiereLote si true, solo usa stocks con lote asignado
+         * Stock de las variantes en el almacén, bloqueado para la transacción. El orden de
+         * salida viene de las colas de {@link AsignadorLotes} y las cantidades de las filas
+         * bloqueadas, que nadie más puede cambiar hasta el fin de la transacción. El tiempo de
+         * espera del bloqueo queda en la métrica {@code bloqueos.espera}.
          */
-        private void procesarSalidaFIFO(Empresa empresa, Almacen almacen,
-                        ProductoVariante variante, Lote loteEspecifico,
-                        Usuario usuario, int cantidadRequerida, boolean requiereLote) {
-                int cantidadRestante = cantidadRequerida;
-
-                List<StockAlmacen> stocksDisponibles;
-
-                if (loteEspecifico != null) {
-                        // Si se especifica lote, usar solo ese
-                        stocksDisponibles = stockAlmacenRepository
-                                        .findByAlmacenIdAndVarianteIdAndLoteId(almacen.getId(), variante.getId(),
-                                                        loteEspecifico.getId())
-                                        .stream().toList();
-                } else if (requiereLote) {
-                        // Producto requiere lote: FIFO solo con stocks que tienen lote
-                        stocksDisponibles = stockAlmacenRepository
-                                        .findAvailableStockWithLoteFIFO(almacen.getId(), variante.getId());
-                } else {
-                        // FIFO normal: incluye stocks con y sin lote
-                        stocksDisponibles = stockAlmacenRepository
-                                        .findAvailableStockFIFO(almacen.getId(), variante.getId());
-                }
-
-                // Verificar que hay stock suficiente
-                int stockTotal = stocksDisponibles.stream().mapToInt(StockAlmacen::getStock).sum();
-                if (stockTotal < cantidadRequerida) {
-                        throw new InsufficientStockException(
-                                        String.format("Stock insuficiente para variante %s. Disponible: %d, Requerido: %d",
-                                                        variante.getNombre(), stockTotal, cantidadRequerida));
+        private final class VistaStock {
+                private final Long almacenId;
+                private Map<Long, List<AsignadorLotes.LoteEnCola>> colas;
+                private final Map<Long, StockAlmacen> stocks = new HashMap<>();
+                // Stock aún disponible por fila (las filas no se modifican en memoria)
+                private final Map<Long, Integer> disponibles = new HashMap<>();
+                private boolean verificada;
+
+                private VistaStock(Long almacenId, Set<Long> varianteIds) {
+                        this.almacenId = almacenId;
+                        this.colas = asignadorLotes.colas(almacenId, varianteIds);
+                        bloquear();
+                }
+
+                /**
+                 * Relee las colas desde la base de datos y bloquea las filas que no estaban en
+                 * la vista. Devuelve false si ya se había verificado en esta transacción.
+                 */
+                private boolean verificar() {
+                        if (verificada) {
+                                return false;
+                        }
+                        verificada = true;
+                        colas = asignadorLotes.recargar(almacenId, colas.keySet());
+                        // Las filas nuevas se bloquean después de las primeras; si eso forma un
+                        // ciclo con otra venta, el deadlock lo resuelve ReintentoBloqueos
+                        bloquear();
+                        return true;
+                }
+
+                private void bloquear() {
+                        List<Long> ids = colas.values().stream()
+                                        .flatMap(List::stream)
+                                        .map(AsignadorLotes.LoteEnCola::stockId)
+                                        .filter(id -> !stocks.containsKey(id))
+                                        .toList();
+                        if (ids.isEmpty()) {
+                                return;
+                        }
+                        meterRegistry.timer("bloqueos.espera", "recurso", "stock")
+                                        .record(() -> stockAlmacenRepository.findAllForUpdateByIdIn(ids))
+                                        .forEach(stock -> {
+                                                stocks.put(stock.getId(), stock);
+                                                disponibles.put(stock.getId(), stock.getStock());
+                                        });
+                }
+
+                // Nuevo stock de las filas que descontaron las ventas registradas. La secuencia es la
+                // mayor de la variante en la transacción: el saldo agregado del kardex queda
+                // bloqueado hasta el commit, así que cualquier cambio posterior de la fila la supera
+                private List<StockEventoDTO> cambios(List<KardexMovimiento> movimientos) {
+                        Map<Long, Long> secuencias = movimientos.stream()
+                                        .collect(Collectors.toMap(m -> m.getVariante().getId(), KardexMovimiento::getSecuencia,
+                                                        Math::max));
+                        return stocks.values().stream()
+                                        .filter(stock -> !disponibles.get(stock.getId()).equals(stock.getStock()))
+                                        .map(stock -> new StockEventoDTO(stock.getId(), almacenId,
+                                                        stock.getVariante().getId(),
+                                                        stock.getLote() != null ? stock.getLote().getId() : null,
+                                                        disponibles.get(stock.getId()),
+                                                        secuencias.get(stock.getVariante().getId())))
+                                        .toList();
+                }
+
+                // Filas que quedaron en cero, por variante
+                private Map<Long, Set<Long>> agotados() {
+                        return stocks.values().stream()
+                                        .filter(stock -> disponibles.get(stock.getId()) <= 0)
+                                        .collect(Collectors.groupingBy(stock -> stock.getVariante().getId(),
+                                                        Collectors.mapping(StockAlmacen::getId, Collectors.toSet())));
+                }
+        }
+
+        private static Demanda demanda(VentaDetalleDTO detalleDTO, Map<Long, ProductoVariante> variantes,
+                        Map<Long, Lote> lotes) {
+                ProductoVariante variante = variantes.get(detalleDTO.getVarianteId());
+                if (variante == null) {
+                        throw new ResourceNotFoundException("Variante no encontrada: " + detalleDTO.getVarianteId());
+                }
+
+                Lote lote = null;
+                if (detalleDTO.getLoteId() != null) {
+                        lote = lotes.get(detalleDTO.getLoteId());
+                        if (lote == null) {
+                                throw new ResourceNotFoundException("Lote no encontrado");
+                        }
                 }
 
-                // Procesar salidas FIFO
-                for (StockAlmacen stock : stocksDisponibles) {
-                        if (cantidadRestante <= 0)
-                                break;
+                // Si el producto requiere lote y no se especificó, el FIFO solo usará stocks con lote
+                return new Demanda(variante, lote, Boolean.TRUE.equals(variante.getProducto().getRequiereLote()));
+        }
+
+        private Map<Long, ProductoVariante> cargarVariantes(Long empresaId, List<VentaDetalleDTO> detalles) {
+                Set<Long> ids = detalles.stream()
+                                .map(VentaDetalleDTO::getVarianteId)
+                                .collect(Collectors.toSet());
+                return varianteRepository.findAllWithProductoByIdIn(ids, empresaId).stream()
+                                .collect(Collectors.toMap(ProductoVariante::getId, Function.identity()));
+        }
 
-                        int cantidadASacar = Math.min(stock.getStock(), cantidadRestante);
+        private Map<Long, Lote> cargarLotes(Long empresaId, List<VentaDetalleDTO> detalles) {
+                Set<Long> ids = detalles.stream()
+                                .map(VentaDetalleDTO::getLoteId)
+                                .filter(Objects::nonNull)
+                                .collect(Collectors.toSet());
+                if (ids.isEmpty()) {
+                        return Map.of();
+                }
+                return loteRepository.findByIdInAndEmpresaId(ids, empresaId).stream()
+                                .collect(Collectors.toMap(Lote::getId, Function.identity()));
+        }
 
-                        // Actualizar stock
-                        stock.setStock(stock.getStock() - cantidadASacar);
-                        stockAlmacenRepository.save(stock);
+        /**
+         * Asigna cada demanda en el orden de su cola (FEFO, y FIFO para el stock sin
+         * vencimiento) siguiendo {@link #ORDEN_DEMANDAS}, y descuenta lo asignado de
+         * {@code disponibles}. Una demanda sin stock suficiente queda con menos porciones que
+         * su cantidad. No escribe nada en la base de datos. Lo usan la venta y la cotización,
+         * así que la cotización muestra la misma asignación que registraría la venta.
+         */
+        static Map<Demanda, List<AsignadorLotes.PorcionLote>> planificar(Map<Demanda, Integer> demandas,
+                        Map<Long, List<AsignadorLotes.LoteEnCola>> colas, Map<Long, Integer> disponibles) {
+                Map<Demanda, List<AsignadorLotes.PorcionLote>> plan = new TreeMap<>(ORDEN_DEMANDAS);
+                demandas.entrySet().stream()
+                                .sorted(Map.Entry.comparingByKey(ORDEN_DEMANDAS))
+                                .forEach(entrada -> {
+                                        Demanda demanda = entrada.getKey();
+                                        List<AsignadorLotes.PorcionLote> porciones = AsignadorLotes.asignar(
+                                                        colas.getOrDefault(demanda.variante().getId(), List.of()),
+                                                        disponibles,
+                                                        demanda.lote() != null ? demanda.lote().getId() : null,
+                                                        demanda.requiereLote(), entrada.getValue());
+                                        porciones.forEach(p -> disponibles.merge(p.stockId(), -p.cantidad(),
+                                                        Integer::sum));
+                                        plan.put(demanda, porciones);
+                                });
+                return plan;
+        }
 
-                        // Registrar movimiento kardex
-                        registrarMovimientoSalida(empresa, almacen, variante, stock.getLote(),
-                                        usuario, cantidadASacar, stock.getCostoPromedio(), "venta");
+        private void descontar(Empresa empresa, Almacen almacen, Usuario usuario, Asignacion asignacion,
+                        List<KardexMovimiento> movimientos) {
+                StockAlmacen stock = asignacion.stock();
 
-                        cantidadRestante -= cantidadASacar;
+                // Actualizar stock; si otra venta lo consumió antes, no se descuenta
+                if (stockAlmacenRepository.descontarStock(stock.getId(), asignacion.cantidad()) == 0) {
+                        throw new InsufficientStockException(
+                                        String.format("Stock insuficiente para variante %s. El stock cambió durante la venta",
+                                                        asignacion.variante().getNombre()));
                 }
+                sincronizacionService.registrar(empresa.getId(), EntidadSincronizacion.STOCK, stock.getId());
+
+                // Registrar movimiento kardex
+                movimientos.add(registrarMovimientoSalida(empresa, almacen, asignacion.variante(), stock.getLote(),
+                                usuario, asignacion.cantidad(), stock.getCostoPromedio(), "venta"));
         }
 
-        private void registrarMovimientoSalida(Empresa empresa, Almacen almacen,
+        private KardexMovimiento registrarMovimientoSalida(Empresa empresa, Almacen almacen,
                         ProductoVariante variante, Lote lote,
                         Usuario usuario, int cantidad,
                         BigDecimal costoUnitario, String referenciaTipo) {
-                // Obtener último saldo
-                var ultimoMovimiento = lote != null
-                                ? kardexRepository.findLastMovimientoByLote(variante.getId(), almacen.getId(),
-                                                lote.getId())
-                                : kardexRepository.findLastMovimiento(variante.getId(), almacen.getId());
-
-                int saldoAnterior = ultimoMovimiento.map(KardexMovimiento::getSaldoCantidad).orElse(0);
-                BigDecimal costoPromedioAnterior = ultimoMovimiento
-                                .map(KardexMovimiento::getSaldoCostoUnitario)
-                                .orElse(costoUnitario);
-
-                int nuevoSaldo = saldoAnterior - cantidad;
+                // Actualizar saldo vigente
+                KardexSaldoService.SaldoMovimiento saldo = kardexSaldoService.registrarSalida(empresa.getId(),
+                                almacen.getId(), variante.getId(), lote != null ? lote.getId() : null, cantidad, costoUnitario);
+
+                int nuevoSaldo = saldo.saldoCantidad();
+                BigDecimal costoPromedioAnterior = saldo.saldoCostoUnitario();
                 BigDecimal costoTotal = costoUnitario.multiply(BigDecimal.valueOf(cantidad));
                 BigDecimal saldoCostoTotal = costoPromedioAnterior.multiply(BigDecimal.valueOf(nuevoSaldo));
 
-                KardexMovimiento movimiento = KardexMovimiento.builder()
+                return KardexMovimiento.builder()
                                 .empresa(empresa)
                                 .almacen(almacen)
                                 .variante(variante)
                                 .lote(lote)
                                 .usuario(usuario)
                                 .fecha(LocalDateTime.now())
+                                .secuencia(saldo.secuencia())
                                 .tipo("salida")
                                 .cantidad(cantidad)
                                 .costoUnitario(costoUnitario)
@@ -206,8 +584,6 @@ public class VentaService {
                                 .saldoCostoTotal(saldoCostoTotal)
                                 .referencia(referenciaTipo)
                                 .build();
-
-                kardexRepository.save(movimiento);
         }
 
         private VentaDTO toDTO(Venta venta) {
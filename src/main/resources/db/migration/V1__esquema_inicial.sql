@@ -0,0 +1,193 @@
+-- Esquema inicial: equivale al que generaba spring.jpa.hibernate.ddl-auto antes de usar
+-- migraciones. Las bases de datos creadas así se registran en esta versión (baseline) y solo
+-- aplican las siguientes, así que este archivo no debe cambiar: los cambios van en una
+-- versión nueva.
+
+CREATE TABLE empresas (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    nombre VARCHAR(120) NOT NULL,
+    ruc VARCHAR(20),
+    direccion VARCHAR(255),
+    telefono VARCHAR(20),
+    email VARCHAR(100),
+    created_at DATETIME(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE usuarios (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    empresa_id BIGINT NOT NULL,
+    username VARCHAR(60) NOT NULL,
+    password_hash VARCHAR(255) NOT NULL,
+    rol VARCHAR(30) NOT NULL,
+    created_at DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT UKm2dvbwfge291euvmk6vkkocao UNIQUE (username),
+    CONSTRAINT FK9v93lqnass5yqhhsyprr9fdv2 FOREIGN KEY (empresa_id) REFERENCES empresas (id)
+);
+
+CREATE TABLE almacenes (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    empresa_id BIGINT NOT NULL,
+    nombre VARCHAR(120) NOT NULL,
+    direccion VARCHAR(200),
+    estado VARCHAR(20) NOT NULL,
+    created_at DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT FK7u52n7ciah7un8089abkd7v3x FOREIGN KEY (empresa_id) REFERENCES empresas (id)
+);
+
+CREATE TABLE productos (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    empresa_id BIGINT NOT NULL,
+    codigo VARCHAR(50) NOT NULL,
+    nombre VARCHAR(150) NOT NULL,
+    categoria VARCHAR(120),
+    descripcion TEXT,
+    unidad_base VARCHAR(50),
+    estado VARCHAR(20) NOT NULL,
+    requiere_lote BIT NOT NULL,
+    created_at DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT FKl3jqa7c6vtlmpsna6prmr8nab FOREIGN KEY (empresa_id) REFERENCES empresas (id)
+);
+
+CREATE TABLE producto_variantes (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    producto_id BIGINT NOT NULL,
+    nombre VARCHAR(150) NOT NULL,
+    sku VARCHAR(60),
+    precio_compra DECIMAL(10,2),
+    precio_venta DECIMAL(10,2),
+    created_at DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT FKa9mst006awyv85oy2n4wx2ix0 FOREIGN KEY (producto_id) REFERENCES productos (id)
+);
+
+CREATE TABLE lotes (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    variante_id BIGINT NOT NULL,
+    codigo_lote VARCHAR(100) NOT NULL,
+    fecha_vencimiento DATE,
+    created_at DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT FKjt538hecf2hqjjj332n85y5x6 FOREIGN KEY (variante_id) REFERENCES producto_variantes (id)
+);
+
+CREATE TABLE stock_almacen (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    empresa_id BIGINT NOT NULL,
+    almacen_id BIGINT NOT NULL,
+    variante_id BIGINT NOT NULL,
+    lote_id BIGINT,
+    stock INTEGER NOT NULL,
+    costo_promedio DECIMAL(10,2),
+    PRIMARY KEY (id),
+    CONSTRAINT FKh06png77qsaa39xgou0s9pey5 FOREIGN KEY (empresa_id) REFERENCES empresas (id),
+    CONSTRAINT FKqtf8knh19bulbx4r9243x8hrm FOREIGN KEY (almacen_id) REFERENCES almacenes (id),
+    CONSTRAINT FKlvbw9y88auq7dt17gwipkuqa1 FOREIGN KEY (variante_id) REFERENCES producto_variantes (id),
+    CONSTRAINT FKq976u8wjol2ygbf1pp6os7l4w FOREIGN KEY (lote_id) REFERENCES lotes (id)
+);
+
+CREATE TABLE compras (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    empresa_id BIGINT NOT NULL,
+    usuario_id BIGINT NOT NULL,
+    almacen_id BIGINT NOT NULL,
+    proveedor VARCHAR(150),
+    fecha DATETIME(6) NOT NULL,
+    numero_documento VARCHAR(80),
+    total DECIMAL(10,2),
+    created_at DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT FKilokrtns5popwhids9tn8485o FOREIGN KEY (empresa_id) REFERENCES empresas (id),
+    CONSTRAINT FK4lnkw9964v2gf3b2sjbaealqw FOREIGN KEY (usuario_id) REFERENCES usuarios (id),
+    CONSTRAINT FKjhfrybe3tfmwkvlkgku49yep FOREIGN KEY (almacen_id) REFERENCES almacenes (id)
+);
+
+CREATE TABLE compra_detalles (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    compra_id BIGINT NOT NULL,
+    variante_id BIGINT NOT NULL,
+    lote_id BIGINT,
+    cantidad INTEGER NOT NULL,
+    costo_unitario DECIMAL(10,2) NOT NULL,
+    costo_total DECIMAL(10,2) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT FKsfye8hj6tynp0w1ut6gjt98oc FOREIGN KEY (compra_id) REFERENCES compras (id),
+    CONSTRAINT FKfvf6yrlor0hovt1wdj1m1laaw FOREIGN KEY (variante_id) REFERENCES producto_variantes (id),
+    CONSTRAINT FK9kb2kj6cr8pfd2x3bq6pryfap FOREIGN KEY (lote_id) REFERENCES lotes (id)
+);
+
+CREATE TABLE ventas (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    empresa_id BIGINT NOT NULL,
+    usuario_id BIGINT NOT NULL,
+    almacen_id BIGINT NOT NULL,
+    cliente VARCHAR(150),
+    fecha DATETIME(6) NOT NULL,
+    numero_documento VARCHAR(80),
+    total DECIMAL(10,2),
+    created_at DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT FKoobeuavyoulowu5vxr1ccx32g FOREIGN KEY (empresa_id) REFERENCES empresas (id),
+    CONSTRAINT FKco9r9xjcdqtgd4nvnnolsr6ei FOREIGN KEY (usuario_id) REFERENCES usuarios (id),
+    CONSTRAINT FK9c8mhgrh9qh0uug3t4waeonw1 FOREIGN KEY (almacen_id) REFERENCES almacenes (id)
+);
+
+CREATE TABLE venta_detalles (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    venta_id BIGINT NOT NULL,
+    variante_id BIGINT NOT NULL,
+    lote_id BIGINT,
+    cantidad INTEGER NOT NULL,
+    precio_unitario DECIMAL(10,2) NOT NULL,
+    subtotal DECIMAL(10,2) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT FK6oe5rpuq8yx6emqvsfb50nipb FOREIGN KEY (venta_id) REFERENCES ventas (id),
+    CONSTRAINT FKjsijk6h3bs3hfmnssawo5qjld FOREIGN KEY (variante_id) REFERENCES producto_variantes (id),
+    CONSTRAINT FKs4x2v511fp6b7upe74amk92aw FOREIGN KEY (lote_id) REFERENCES lotes (id)
+);
+
+CREATE TABLE ajustes_inventario (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    empresa_id BIGINT NOT NULL,
+    usuario_id BIGINT NOT NULL,
+    almacen_id BIGINT NOT NULL,
+    variante_id BIGINT NOT NULL,
+    lote_id BIGINT,
+    fecha DATETIME(6) NOT NULL,
+    stock_antes INTEGER NOT NULL,
+    stock_despues INTEGER NOT NULL,
+    motivo VARCHAR(150) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT FK2q163drrhmx3a1rpbhmvkrbwv FOREIGN KEY (empresa_id) REFERENCES empresas (id),
+    CONSTRAINT FKhp98vnylbnftgtl66bg9d97sm FOREIGN KEY (usuario_id) REFERENCES usuarios (id),
+    CONSTRAINT FKertp9dd7ahi53ea5s0wn8w3bv FOREIGN KEY (almacen_id) REFERENCES almacenes (id),
+    CONSTRAINT FKg578hyx8db5wg4c1lpcgkm0vl FOREIGN KEY (variante_id) REFERENCES producto_variantes (id),
+    CONSTRAINT FKip265re11grfgne165gqybvg9 FOREIGN KEY (lote_id) REFERENCES lotes (id)
+);
+
+CREATE TABLE kardex_movimientos (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    empresa_id BIGINT NOT NULL,
+    usuario_id BIGINT NOT NULL,
+    almacen_id BIGINT NOT NULL,
+    variante_id BIGINT NOT NULL,
+    lote_id BIGINT,
+    fecha DATETIME(6) NOT NULL,
+    tipo VARCHAR(20) NOT NULL,
+    cantidad INTEGER NOT NULL,
+    costo_unitario DECIMAL(10,2) NOT NULL,
+    costo_total DECIMAL(10,2) NOT NULL,
+    saldo_cantidad INTEGER NOT NULL,
+    saldo_costo_unitario DECIMAL(10,2) NOT NULL,
+    saldo_costo_total DECIMAL(10,2) NOT NULL,
+    referencia VARCHAR(150),
+    PRIMARY KEY (id),
+    CONSTRAINT FKk896lqxfphlt8kbbk2ulnwgo3 FOREIGN KEY (empresa_id) REFERENCES empresas (id),
+    CONSTRAINT FKqhaprw7ln15k3awl6kqtfah1a FOREIGN KEY (usuario_id) REFERENCES usuarios (id),
+    CONSTRAINT FKak4vmgydildympikprvl099eg FOREIGN KEY (almacen_id) REFERENCES almacenes (id),
+    CONSTRAINT FKnjh3iuhmvp3vvhly9ubjk3lgw FOREIGN KEY (variante_id) REFERENCES producto_variantes (id),
+    CONSTRAINT FKrbhwqgl84jnp64n3t4i5tkc6d FOREIGN KEY (lote_id) REFERENCES lotes (id)
+);
@@ -0,0 +1,103 @@
+-- Cambios de esquema posteriores a V1 que antes aplicaba ddl-auto: corren antes de V3, que
+-- completa los datos de las columnas nuevas
+
+-- Versión de los tokens emitidos a cada usuario (revocación al cambiar rol o credenciales)
+ALTER TABLE usuarios ADD COLUMN version_token INTEGER NOT NULL DEFAULT 0;
+
+-- empresa_id desnormalizado en variantes y lotes; V3 completa las filas existentes. El índice
+-- va antes de la clave foránea para que esta lo use en lugar de crear uno propio
+ALTER TABLE producto_variantes ADD COLUMN empresa_id BIGINT;
+CREATE INDEX idx_variantes_empresa ON producto_variantes (empresa_id, id);
+ALTER TABLE producto_variantes
+    ADD CONSTRAINT FKmfr5vyxyxxnbmnrrfsmnajdur FOREIGN KEY (empresa_id) REFERENCES empresas (id);
+
+ALTER TABLE lotes ADD COLUMN empresa_id BIGINT;
+CREATE INDEX idx_lotes_empresa_vencimiento ON lotes (empresa_id, fecha_vencimiento);
+ALTER TABLE lotes
+    ADD CONSTRAINT FKk8jteqj8y1ufjviafyprdff28 FOREIGN KEY (empresa_id) REFERENCES empresas (id);
+
+-- Umbrales de reposición por variante; null = sin control de stock bajo
+ALTER TABLE producto_variantes ADD COLUMN stock_minimo INTEGER;
+ALTER TABLE producto_variantes ADD COLUMN punto_reorden INTEGER;
+
+-- Antes de la clave única se fusionan las filas repetidas de una misma (almacén, variante, lote):
+-- queda la de menor id con la suma del stock y el costo promedio ponderado por ese stock. Las
+-- filas fusionadas van a una tabla de trabajo porque MySQL no deja leer en una subconsulta la
+-- tabla que se modifica
+CREATE TABLE stock_almacen_fusion (
+    id BIGINT NOT NULL,
+    almacen_id BIGINT NOT NULL,
+    variante_id BIGINT NOT NULL,
+    lote_clave BIGINT NOT NULL,
+    stock INTEGER NOT NULL,
+    costo_promedio DECIMAL(10,2),
+    PRIMARY KEY (id)
+);
+
+INSERT INTO stock_almacen_fusion (id, almacen_id, variante_id, lote_clave, stock, costo_promedio)
+SELECT MIN(id),
+       almacen_id,
+       variante_id,
+       COALESCE(lote_id, 0),
+       SUM(stock),
+       COALESCE(ROUND(SUM(CASE WHEN costo_promedio IS NOT NULL THEN stock * costo_promedio END)
+                      / NULLIF(SUM(CASE WHEN costo_promedio IS NOT NULL THEN stock END), 0), 2),
+                MAX(costo_promedio))
+FROM stock_almacen
+GROUP BY almacen_id, variante_id, COALESCE(lote_id, 0)
+HAVING COUNT(*) > 1;
+
+UPDATE stock_almacen
+SET stock = (SELECT f.stock FROM stock_almacen_fusion f WHERE f.id = stock_almacen.id),
+    costo_promedio = (SELECT f.costo_promedio FROM stock_almacen_fusion f WHERE f.id = stock_almacen.id)
+WHERE id IN (SELECT id FROM stock_almacen_fusion);
+
+DELETE FROM stock_almacen
+WHERE EXISTS (SELECT 1 FROM stock_almacen_fusion f
+              WHERE f.almacen_id = stock_almacen.almacen_id
+                AND f.variante_id = stock_almacen.variante_id
+                AND f.lote_clave = COALESCE(stock_almacen.lote_id, 0)
+                AND f.id < stock_almacen.id);
+
+DROP TABLE stock_almacen_fusion;
+
+-- Una fila de stock por (almacén, variante, lote); lote_clave = 0 para el stock sin lote,
+-- porque la clave única admite varios NULL
+ALTER TABLE stock_almacen ADD COLUMN lote_clave BIGINT GENERATED ALWAYS AS (COALESCE(lote_id, 0));
+ALTER TABLE stock_almacen
+    ADD CONSTRAINT uk_stock_almacen_variante_lote UNIQUE (almacen_id, variante_id, lote_clave);
+CREATE INDEX idx_stock_variante_almacen ON stock_almacen (variante_id, almacen_id, stock);
+
+-- Listados por empresa o almacén ordenados por fecha
+CREATE INDEX idx_compras_empresa_fecha ON compras (empresa_id, fecha, id);
+CREATE INDEX idx_compras_almacen_fecha ON compras (almacen_id, fecha, id);
+CREATE INDEX idx_ventas_empresa_fecha ON ventas (empresa_id, fecha, id);
+CREATE INDEX idx_ventas_almacen_fecha ON ventas (almacen_id, fecha, id);
+CREATE INDEX idx_ajustes_empresa_fecha ON ajustes_inventario (empresa_id, fecha, id);
+CREATE INDEX idx_ajustes_almacen_fecha ON ajustes_inventario (almacen_id, fecha, id);
+CREATE INDEX idx_kardex_empresa_fecha ON kardex_movimientos (empresa_id, fecha, id);
+
+-- Saldo vigente del kardex; las filas que faltan se crean desde el historial al primer movimiento
+CREATE TABLE kardex_saldos (
+    empresa_id BIGINT NOT NULL,
+    almacen_id BIGINT NOT NULL,
+    variante_id BIGINT NOT NULL,
+    lote_id BIGINT NOT NULL,
+    saldo_cantidad INTEGER NOT NULL,
+    saldo_costo_unitario DECIMAL(10,2) NOT NULL,
+    secuencia BIGINT NOT NULL,
+    updated_at DATETIME(6),
+    PRIMARY KEY (almacen_id, empresa_id, lote_id, variante_id)
+);
+
+-- Ids asignados por bloques: el primer bloque de cada tabla empieza en MAX(id) + 1, así que
+-- las tablas dejan de usar AUTO_INCREMENT sin chocar con sus filas existentes
+CREATE TABLE id_bloques (
+    tabla VARCHAR(64) NOT NULL,
+    siguiente BIGINT NOT NULL,
+    PRIMARY KEY (tabla)
+);
+
+ALTER TABLE kardex_movimientos MODIFY id BIGINT NOT NULL;
+ALTER TABLE compra_detalles MODIFY id BIGINT NOT NULL;
+ALTER TABLE venta_detalles MODIFY id BIGINT NOT NULL;
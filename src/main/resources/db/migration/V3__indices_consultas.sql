@@ -0,0 +1,26 @@
+-- empresa_id de variantes y lotes (V2): completa las filas creadas antes de desnormalizar la
+-- columna y la vuelve obligatoria
+UPDATE producto_variantes SET empresa_id =
+    (SELECT p.empresa_id FROM productos p WHERE p.id = producto_variantes.producto_id)
+WHERE empresa_id IS NULL;
+
+UPDATE lotes SET empresa_id =
+    (SELECT v.empresa_id FROM producto_variantes v WHERE v.id = lotes.variante_id)
+WHERE empresa_id IS NULL;
+
+ALTER TABLE producto_variantes MODIFY empresa_id BIGINT NOT NULL;
+ALTER TABLE lotes MODIFY empresa_id BIGINT NOT NULL;
+
+-- Kardex de una variante en un almacén (findKardex, findLastMovimiento): igualdad en
+-- variante/almacén y orden por fecha, id sin ordenar en memoria
+CREATE INDEX idx_kardex_variante_almacen_fecha ON kardex_movimientos (variante_id, almacen_id, fecha, id);
+
+-- Lo mismo por lote (findKardexByLote, findLastMovimientoByLote) y el último movimiento
+-- de cada lote (findUltimosMovimientosPorLote: GROUP BY lote_id con MAX(id))
+CREATE INDEX idx_kardex_variante_almacen_lote ON kardex_movimientos (variante_id, almacen_id, lote_id, fecha, id);
+
+-- Unicidad de código por empresa (existsByCodigoAndEmpresaId)
+CREATE INDEX idx_productos_empresa_codigo ON productos (empresa_id, codigo);
+
+-- SKU por empresa: unicidad (existsBySkuAndEmpresaId) y búsqueda por SKU
+CREATE INDEX idx_variantes_empresa_sku ON producto_variantes (empresa_id, sku);
@@ -0,0 +1,29 @@
+-- Secuencia de cada movimiento dentro de (almacén, variante). Reemplaza el orden por fecha,
+-- que empata o retrocede entre transacciones concurrentes.
+ALTER TABLE kardex_movimientos ADD COLUMN secuencia BIGINT;
+
+-- Movimientos existentes: numerados en el orden que tenían (fecha, id)
+UPDATE kardex_movimientos SET secuencia = (
+    SELECT n.secuencia FROM (
+        SELECT id, ROW_NUMBER() OVER (PARTITION BY almacen_id, variante_id ORDER BY fecha, id) AS secuencia
+        FROM kardex_movimientos
+    ) n WHERE n.id = kardex_movimientos.id
+);
+
+ALTER TABLE kardex_movimientos MODIFY secuencia BIGINT NOT NULL;
+
+ALTER TABLE kardex_movimientos
+    ADD CONSTRAINT uk_kardex_variante_almacen_secuencia UNIQUE (variante_id, almacen_id, secuencia);
+CREATE INDEX idx_kardex_variante_almacen_lote_secuencia
+    ON kardex_movimientos (variante_id, almacen_id, lote_id, secuencia);
+
+-- Los índices por fecha quedan sin consultas que los usen
+ALTER TABLE kardex_movimientos DROP INDEX idx_kardex_variante_almacen_fecha;
+ALTER TABLE kardex_movimientos DROP INDEX idx_kardex_variante_almacen_lote;
+
+-- El saldo agregado continúa la numeración desde el último movimiento
+UPDATE kardex_saldos SET secuencia = COALESCE((
+    SELECT MAX(k.secuencia) FROM kardex_movimientos k
+    WHERE k.almacen_id = kardex_saldos.almacen_id AND k.variante_id = kardex_saldos.variante_id
+), 0)
+WHERE lote_id = 0;
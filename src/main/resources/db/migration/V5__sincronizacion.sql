@@ -0,0 +1,33 @@
+-- Sincronización incremental de clientes sin conexión (GET /sync): contador de versiones por
+-- empresa y la última versión en la que cambió cada producto, variante, lote o fila de stock
+CREATE TABLE sincronizacion_versiones (
+    empresa_id BIGINT NOT NULL,
+    version BIGINT NOT NULL,
+    PRIMARY KEY (empresa_id)
+);
+
+CREATE TABLE sincronizacion_cambios (
+    empresa_id BIGINT NOT NULL,
+    entidad VARCHAR(20) NOT NULL,
+    entidad_id BIGINT NOT NULL,
+    version BIGINT NOT NULL,
+    eliminado BIT NOT NULL,
+    PRIMARY KEY (empresa_id, entidad, entidad_id)
+);
+
+-- Cambios posteriores a una versión (findDesde); la clave primaria completa el orden
+CREATE INDEX idx_sincronizacion_empresa_version ON sincronizacion_cambios (empresa_id, version);
+
+-- Filas existentes: una versión por fila, así la primera sincronización se pagina como cualquier otra
+INSERT INTO sincronizacion_cambios (empresa_id, entidad, entidad_id, version, eliminado)
+SELECT t.empresa_id, t.entidad, t.entidad_id,
+    ROW_NUMBER() OVER (PARTITION BY t.empresa_id ORDER BY t.orden, t.entidad_id), 0
+FROM (
+    SELECT empresa_id, 'PRODUCTO' AS entidad, id AS entidad_id, 1 AS orden FROM productos
+    UNION ALL SELECT empresa_id, 'VARIANTE', id, 2 FROM producto_variantes
+    UNION ALL SELECT empresa_id, 'LOTE', id, 3 FROM lotes
+    UNION ALL SELECT empresa_id, 'STOCK', id, 4 FROM stock_almacen
+) t;
+
+INSERT INTO sincronizacion_versiones (empresa_id, version)
+SELECT empresa_id, MAX(version) FROM sincronizacion_cambios GROUP BY empresa_id;
@@ -0,0 +1,363 @@
+package com.skadi.backend.repositories;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.domain.Limit;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Aplica las migraciones sobre H2 (modo MySQL), ejecuta las consultas de los repositorios y
+ * comprueba con EXPLAIN sobre el SQL que genera Hibernate que encuentran un índice que cubre
+ * sus filtros y su orden.
+ */
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:indices;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class IndicesConsultasTest {
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private KardexMovimientoRepository kardexRepository;
+
+	@Autowired
+	private StockAlmacenRepository stockAlmacenRepository;
+
+	@Autowired
+	private LoteRepository loteRepository;
+
+	@Autowired
+	private VentaRepository ventaRepository;
+
+	@Autowired
+	private CompraRepository compraRepository;
+
+	@Autowired
+	private ProductoRepository productoRepository;
+
+	@Autowired
+	private ProductoVarianteRepository varianteRepository;
+
+	@Autowired
+	private CambioSincronizacionRepository cambioRepository;
+
+	@TestConfiguration
+	static class Configuracion {
+		@Bean
+		static BeanPostProcessor registrarConsultas() {
+			return new BeanPostProcessor() {
+				@Override
+				public Object postProcessAfterInitialization(Object bean, String nombre) {
+					return bean instanceof DataSource dataSource ? ConsultaEjecutada.registrar(dataSource) : bean;
+				}
+			};
+		}
+	}
+
+	@BeforeAll
+	void poblar() throws SQLException {
+		try (Connection conexion = dataSource.getConnection()) {
+			poblar(conexion);
+		}
+	}
+
+	@Test
+	void kardexPorVarianteYAlmacen() throws SQLException {
+		assertUsaIndice(() -> kardexRepository.findKardex(1L, 1L, 1L, 2L, Limit.of(50)),
+				"uk_kardex_variante_almacen_secuencia");
+	}
+
+	@Test
+	void kardexPorLote() throws SQLException {
+		assertUsaIndice(() -> kardexRepository.findKardexByLote(1L, 1L, 1L, 1L, null, Limit.of(50)),
+				"idx_kardex_variante_almacen_lote_secuencia");
+	}
+
+	@Test
+	void ultimoMovimiento() throws SQLException {
+		assertUsaIndice(() -> kardexRepository.findLastMovimiento(1L, 1L),
+				"uk_kardex_variante_almacen_secuencia");
+	}
+
+	@Test
+	void ultimoMovimientoPorLote() throws SQLException {
+		assertUsaIndice(() -> kardexRepository.findLastMovimientoByLote(1L, 1L, 1L),
+				"idx_kardex_variante_almacen_lote_secuencia");
+	}
+
+	@Test
+	void kardexPorEmpresaYFecha() throws SQLException {
+		assertUsaIndice(() -> kardexRepository.findByEmpresaIdAndFechaBetween(1L,
+				LocalDateTime.of(2025, 1, 1, 0, 0), LocalDateTime.of(2025, 1, 31, 0, 0)),
+				"idx_kardex_empresa_fecha");
+	}
+
+	@Test
+	void stockDisponibleFifo() throws SQLException {
+		assertUsaIndice(() -> stockAlmacenRepository.findColaFEFO(1L, List.of(1L)),
+				"uk_stock_almacen_variante_lote", "idx_stock_variante_almacen");
+	}
+
+	@Test
+	void disponibilidadPorVariantes() throws SQLException {
+		assertUsaIndice(() -> stockAlmacenRepository.findDisponibilidad(1L, List.of(1L, 3L, 5L), null),
+				"idx_stock_variante_almacen");
+	}
+
+	@Test
+	void stockBajoPorVarianteYAlmacen() throws SQLException {
+		assertUsaIndice(() -> stockAlmacenRepository.findStockBajo(1L, null),
+				"idx_stock_variante_almacen", "uk_stock_almacen_variante_lote");
+	}
+
+	@Test
+	void lotesPorVencer() throws SQLException {
+		assertUsaIndice(() -> loteRepository.findLotesPorVencer(1L, LocalDate.of(2025, 6, 1)),
+				"idx_lotes_empresa_vencimiento");
+	}
+
+	@Test
+	void paginaDeVentas() throws SQLException {
+		assertUsaIndice(() -> ventaRepository.findIdsPagina(1L, null, null, null, null, null, null, null,
+				Limit.of(20)),
+				"idx_ventas_empresa_fecha");
+	}
+
+	@Test
+	void paginaDeCompras() throws SQLException {
+		assertUsaIndice(() -> compraRepository.findIdsPagina(1L, null, null, null, null, null, null, null,
+				Limit.of(20)),
+				"idx_compras_empresa_fecha");
+	}
+
+	@Test
+	void codigoDeProductoPorEmpresa() throws SQLException {
+		assertUsaIndice(() -> productoRepository.existsByCodigoAndEmpresaId("P1", 1L),
+				"idx_productos_empresa_codigo");
+	}
+
+	@Test
+	void skuDeVariantePorEmpresa() throws SQLException {
+		assertUsaIndice(() -> varianteRepository.existsBySkuAndEmpresaId("SKU-1", 1L),
+				"idx_variantes_empresa_sku");
+	}
+
+	@Test
+	void skuDeOtraVarianteDeLaEmpresa() throws SQLException {
+		assertUsaIndice(() -> varianteRepository.existsBySkuAndEmpresaIdAndIdNot("SKU-1", 1L, 1L),
+				"idx_variantes_empresa_sku");
+	}
+
+	@Test
+	void variantesPorSku() throws SQLException {
+		assertUsaIndice(() -> varianteRepository.findAllWithProductoBySkuIn(List.of("SKU-1", "SKU-2"), 1L),
+				"idx_variantes_empresa_sku");
+	}
+
+	@Test
+	void variantesPorEmpresa() throws SQLException {
+		// H2 crea un índice propio para la clave foránea; MySQL usa idx_variantes_empresa para ambos
+		assertUsaIndice(() -> varianteRepository.countByEmpresaId(1L),
+				"idx_variantes_empresa", "fkmfr5vyxyxxnbmnrrfsmnajdur");
+	}
+
+	@Test
+	void cambiosDeSincronizacion() throws SQLException {
+		assertUsaIndice(() -> cambioRepository.findDesde(1L, 20L, Limit.of(50)),
+				"idx_sincronizacion_empresa_version");
+	}
+
+	// Ejecuta la consulta del repositorio y pide a H2 el plan del SQL que envió Hibernate, con
+	// los parámetros como literales igual que los envía el driver de MySQL
+	private void assertUsaIndice(Runnable consulta, String... indices) throws SQLException {
+		ConsultaEjecutada.ultima = null;
+		consulta.run();
+		ConsultaEjecutada ejecutada = ConsultaEjecutada.ultima;
+		assertThat(ejecutada).isNotNull();
+
+		String plan;
+		try (Connection conexion = dataSource.getConnection();
+				Statement st = conexion.createStatement();
+				ResultSet rs = st.executeQuery("EXPLAIN " + ejecutada.conLiterales())) {
+			rs.next();
+			plan = rs.getString(1).toLowerCase();
+		}
+		assertThat(indices).as(plan).anyMatch(indice -> plan.contains("/* public." + indice));
+	}
+
+	/**
+	 * Última consulta ejecutada por Hibernate con sus parámetros; se registra envolviendo el
+	 * DataSource, la conexión y el PreparedStatement.
+	 */
+	private static final class ConsultaEjecutada {
+		private static volatile ConsultaEjecutada ultima;
+
+		private final String sql;
+		private final Map<Integer, Object> parametros = new ConcurrentHashMap<>();
+
+		private ConsultaEjecutada(String sql) {
+			this.sql = sql;
+		}
+
+		private interface Interceptor {
+			Object despues(Method metodo, Object[] args, Object resultado);
+		}
+
+		static DataSource registrar(DataSource dataSource) {
+			return envolver(DataSource.class, dataSource, (metodo, args, resultado) ->
+					resultado instanceof Connection conexion ? envolver(Connection.class, conexion, ConsultaEjecutada::preparar)
+							: resultado);
+		}
+
+		private static Object preparar(Method metodo, Object[] args, Object resultado) {
+			if (!(resultado instanceof PreparedStatement ps) || !metodo.getName().equals("prepareStatement")) {
+				return resultado;
+			}
+			ConsultaEjecutada consulta = new ConsultaEjecutada((String) args[0]);
+			return envolver(PreparedStatement.class, ps, (m, a, r) -> {
+				if (m.getName().startsWith("set") && a != null && a.length >= 2 && a[0] instanceof Integer indice) {
+					consulta.parametros.put(indice, m.getName().equals("setNull") ? NULO : a[1]);
+				} else if (m.getName().equals("executeQuery")) {
+					ultima = consulta;
+				}
+				return r;
+			});
+		}
+
+		private static final Object NULO = new Object();
+
+		private String conLiterales() {
+			StringBuilder resultado = new StringBuilder();
+			boolean enTexto = false;
+			int indice = 0;
+			for (char c : sql.toCharArray()) {
+				if (c == '\'') {
+					enTexto = !enTexto;
+				}
+				if (c == '?' && !enTexto) {
+					resultado.append(literal(parametros.get(++indice)));
+				} else {
+					resultado.append(c);
+				}
+			}
+			return resultado.toString();
+		}
+
+		private static String literal(Object valor) {
+			if (valor == null || valor == NULO) {
+				return "NULL";
+			}
+			if (valor instanceof Number || valor instanceof Boolean) {
+				return valor.toString();
+			}
+			if (valor instanceof LocalDateTime fecha) {
+				valor = Timestamp.valueOf(fecha);
+			}
+			if (valor instanceof LocalDate fecha) {
+				valor = Date.valueOf(fecha);
+			}
+			if (valor instanceof Timestamp) {
+				return "TIMESTAMP '" + valor + "'";
+			}
+			if (valor instanceof Date) {
+				return "DATE '" + valor + "'";
+			}
+			return "'" + valor.toString().replace("'", "''") + "'";
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <T> T envolver(Class<T> tipo, T objeto, Interceptor interceptor) {
+			return (T) Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[] { tipo }, (proxy, metodo, args) -> {
+				try {
+					return interceptor.despues(metodo, args, metodo.invoke(objeto, args));
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			});
+		}
+	}
+
+	// Dos empresas con varios almacenes, variantes y lotes para que el optimizador tenga
+	// estadísticas con las que preferir el índice compuesto sobre el de la FK
+	private static void poblar(Connection conexion) throws SQLException {
+		try (Statement st = conexion.createStatement()) {
+			for (int e = 1; e <= 2; e++) {
+				st.execute("INSERT INTO empresas (id, nombre) VALUES (" + e + ", 'E" + e + "')");
+				st.execute("INSERT INTO usuarios (id, empresa_id, username, password_hash, rol, version_token) "
+						+ "VALUES (" + e + ", " + e + ", 'u" + e + "', 'x', 'admin', 0)");
+			}
+			for (int a = 1; a <= 4; a++) {
+				st.execute("INSERT INTO almacenes (id, empresa_id, nombre, estado) VALUES ("
+						+ a + ", " + (a % 2 + 1) + ", 'A" + a + "', 'activo')");
+			}
+			for (int v = 1; v <= 40; v++) {
+				int empresa = v % 2 + 1;
+				st.execute("INSERT INTO productos (id, empresa_id, codigo, nombre, estado, requiere_lote) VALUES ("
+						+ v + ", " + empresa + ", 'P" + v + "', 'Prod" + v + "', 'activo', true)");
+				st.execute("INSERT INTO producto_variantes (id, producto_id, empresa_id, nombre, sku) VALUES ("
+						+ v + ", " + v + ", " + empresa + ", 'V" + v + "', 'SKU-" + v + "')");
+				st.execute("INSERT INTO lotes (id, variante_id, empresa_id, codigo_lote, fecha_vencimiento) VALUES ("
+						+ v + ", " + v + ", " + empresa + ", 'L" + v + "', DATE '2025-01-01' + " + v * 7 + ")");
+			}
+			int id = 1;
+			for (int a = 1; a <= 4; a++) {
+				for (int v = 1; v <= 40; v++) {
+					st.execute("INSERT INTO stock_almacen (empresa_id, almacen_id, variante_id, lote_id, stock) VALUES ("
+							+ (v % 2 + 1) + ", " + a + ", " + v + ", " + v + ", " + v + ")");
+					for (int m = 0; m < 5; m++, id++) {
+						st.execute("INSERT INTO kardex_movimientos (id, empresa_id, usuario_id, almacen_id, variante_id, "
+								+ "lote_id, fecha, secuencia, tipo, cantidad, costo_unitario, costo_total, saldo_cantidad, "
+								+ "saldo_costo_unitario, saldo_costo_total) VALUES (" + id + ", " + (v % 2 + 1) + ", "
+								+ (v % 2 + 1) + ", " + a + ", " + v + ", " + v + ", TIMESTAMP '2025-01-01 00:00:00' + "
+								+ id + " * INTERVAL '1' HOUR, " + (m + 1) + ", 'ENTRADA', 1, 1, 1, 1, 1, 1)");
+					}
+				}
+			}
+			for (int i = 1; i <= 200; i++) {
+				String valores = "(" + i + ", " + (i % 2 + 1) + ", " + (i % 2 + 1) + ", " + (i % 4 + 1)
+						+ ", TIMESTAMP '2025-01-01 00:00:00' + " + i + " * INTERVAL '1' HOUR)";
+				st.execute("INSERT INTO ventas (id, empresa_id, usuario_id, almacen_id, fecha) VALUES " + valores);
+				st.execute("INSERT INTO compras (id, empresa_id, usuario_id, almacen_id, fecha) VALUES " + valores);
+			}
+			for (int v = 1; v <= 40; v++) {
+				for (String entidad : new String[] { "PRODUCTO", "VARIANTE", "LOTE" }) {
+					st.execute("INSERT INTO sincronizacion_cambios (empresa_id, entidad, entidad_id, version, eliminado) "
+							+ "VALUES (" + (v % 2 + 1) + ", '" + entidad + "', " + v + ", " + v + ", false)");
+				}
+			}
+			st.execute("ANALYZE");
+		}
+	}
+}
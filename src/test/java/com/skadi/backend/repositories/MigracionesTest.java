@@ -0,0 +1,71 @@
+package com.skadi.backend.repositories;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationVersion;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Una base con datos creada con el esquema de V1 (la que se registra como baseline) recibe
+ * las migraciones siguientes sin errores y con los datos completados.
+ */
+class MigracionesTest {
+
+	@Test
+	void migraUnaBaseConElEsquemaInicial() throws SQLException {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:migraciones;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+		Flyway.configure().dataSource(dataSource).target(MigrationVersion.fromVersion("1")).load().migrate();
+
+		try (Connection conexion = dataSource.getConnection(); Statement st = conexion.createStatement()) {
+			st.execute("INSERT INTO empresas (id, nombre) VALUES (1, 'E1')");
+			st.execute("INSERT INTO usuarios (id, empresa_id, username, password_hash, rol) VALUES (1, 1, 'u1', 'x', 'admin')");
+			st.execute("INSERT INTO almacenes (id, empresa_id, nombre, estado) VALUES (1, 1, 'A1', 'activo')");
+			st.execute("INSERT INTO productos (id, empresa_id, codigo, nombre, estado, requiere_lote) "
+					+ "VALUES (1, 1, 'P1', 'Prod1', 'activo', true)");
+			st.execute("INSERT INTO producto_variantes (id, producto_id, nombre) VALUES (1, 1, 'V1')");
+			st.execute("INSERT INTO lotes (id, variante_id, codigo_lote) VALUES (1, 1, 'L1')");
+			st.execute("INSERT INTO stock_almacen (empresa_id, almacen_id, variante_id, lote_id, stock) VALUES (1, 1, 1, 1, 5)");
+			st.execute("INSERT INTO stock_almacen (empresa_id, almacen_id, variante_id, stock) VALUES (1, 1, 1, 2)");
+			// Filas repetidas del stock sin lote que V2 fusiona antes de crear la clave única
+			st.execute("INSERT INTO stock_almacen (empresa_id, almacen_id, variante_id, stock, costo_promedio) "
+					+ "VALUES (1, 1, 1, 6, 10), (1, 1, 1, 2, 14)");
+			for (int i = 0; i < 2; i++) {
+				st.execute("INSERT INTO kardex_movimientos (empresa_id, usuario_id, almacen_id, variante_id, lote_id, "
+						+ "fecha, tipo, cantidad, costo_unitario, costo_total, saldo_cantidad, saldo_costo_unitario, "
+						+ "saldo_costo_total) VALUES (1, 1, 1, 1, 1, TIMESTAMP '2025-01-01 00:00:00', 'ENTRADA', "
+						+ "1, 1, 1, 1, 1, 1)");
+			}
+		}
+
+		Flyway.configure().dataSource(dataSource).load().migrate();
+
+		try (Connection conexion = dataSource.getConnection(); Statement st = conexion.createStatement()) {
+			assertThat(valor(st, "SELECT empresa_id FROM producto_variantes WHERE id = 1")).isEqualTo(1L);
+			assertThat(valor(st, "SELECT empresa_id FROM lotes WHERE id = 1")).isEqualTo(1L);
+			assertThat(valor(st, "SELECT version_token FROM usuarios WHERE id = 1")).isEqualTo(0L);
+			assertThat(valor(st, "SELECT lote_clave FROM stock_almacen WHERE lote_id IS NULL")).isEqualTo(0L);
+			assertThat(valor(st, "SELECT COUNT(*) FROM stock_almacen WHERE lote_id IS NULL")).isEqualTo(1L);
+			assertThat(valor(st, "SELECT id FROM stock_almacen WHERE lote_id IS NULL")).isEqualTo(2L);
+			assertThat(valor(st, "SELECT stock FROM stock_almacen WHERE lote_id IS NULL")).isEqualTo(10L);
+			assertThat(valor(st, "SELECT costo_promedio * 100 FROM stock_almacen WHERE lote_id IS NULL"))
+					.isEqualTo(1100L);
+			assertThat(valor(st, "SELECT MAX(secuencia) FROM kardex_movimientos")).isEqualTo(2L);
+			assertThat(valor(st, "SELECT COUNT(*) FROM sincronizacion_cambios WHERE empresa_id = 1")).isEqualTo(5L);
+		}
+	}
+
+	private static long valor(Statement st, String sql) throws SQLException {
+		try (ResultSet rs = st.executeQuery(sql)) {
+			rs.next();
+			return rs.getLong(1);
+		}
+	}
+}
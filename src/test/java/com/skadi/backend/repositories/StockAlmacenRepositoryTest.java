@@ -0,0 +1,75 @@
+package com.skadi.backend.repositories;
+
+import com.skadi.backend.dto.StockBajoDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:stock;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class StockAlmacenRepositoryTest {
+
+	@Autowired
+	private StockAlmacenRepository stockAlmacenRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	// Empresa 1 con dos almacenes activos y uno inactivo. Variantes con mínimo 5:
+	// 1 nunca tuvo stock, 2 tiene 10 en el almacén 1 y 3 tiene 2 repartido en dos lotes.
+	// La variante 4 no tiene umbrales y la 5 es de otra empresa.
+	@BeforeEach
+	void poblar() {
+		jdbcTemplate.execute("INSERT INTO empresas (id, nombre) VALUES (1, 'E1'), (2, 'E2')");
+		jdbcTemplate.execute("INSERT INTO almacenes (id, empresa_id, nombre, estado) VALUES "
+				+ "(1, 1, 'A1', 'activo'), (2, 1, 'A2', 'activo'), (3, 1, 'A3', 'inactivo'), (4, 2, 'B1', 'activo')");
+		for (int v = 1; v <= 5; v++) {
+			int empresa = v == 5 ? 2 : 1;
+			String minimo = v == 4 ? "NULL" : "5";
+			jdbcTemplate.execute("INSERT INTO productos (id, empresa_id, codigo, nombre, estado, requiere_lote) "
+					+ "VALUES (" + v + ", " + empresa + ", 'P" + v + "', 'Prod" + v + "', 'activo', false)");
+			jdbcTemplate.execute("INSERT INTO producto_variantes (id, producto_id, empresa_id, nombre, stock_minimo) "
+					+ "VALUES (" + v + ", " + v + ", " + empresa + ", 'V" + v + "', " + minimo + ")");
+		}
+		jdbcTemplate.execute("INSERT INTO lotes (id, variante_id, empresa_id, codigo_lote) VALUES (1, 3, 1, 'L1'), (2, 3, 1, 'L2')");
+		jdbcTemplate.execute("INSERT INTO stock_almacen (empresa_id, almacen_id, variante_id, lote_id, stock) VALUES "
+				+ "(1, 1, 2, NULL, 10), (1, 1, 3, 1, 1), (1, 1, 3, 2, 1), (2, 4, 5, NULL, 0)");
+	}
+
+	@Test
+	void stockBajoIncluyeVariantesSinFilasDeStock() {
+		List<StockBajoDTO> bajos = stockAlmacenRepository.findStockBajo(1L, null);
+
+		assertThat(bajos)
+				.extracting(StockBajoDTO::getAlmacenId, StockBajoDTO::getVarianteId, StockBajoDTO::getStock)
+				.containsExactly(
+						tuple(1L, 1L, 0L),
+						tuple(1L, 3L, 2L),
+						tuple(2L, 1L, 0L),
+						tuple(2L, 2L, 0L),
+						tuple(2L, 3L, 0L));
+	}
+
+	@Test
+	void stockBajoDeUnAlmacen() {
+		List<StockBajoDTO> bajos = stockAlmacenRepository.findStockBajo(1L, 3L);
+
+		assertThat(bajos)
+				.extracting(StockBajoDTO::getVarianteId, StockBajoDTO::getStock)
+				.containsExactly(tuple(1L, 0L), tuple(2L, 0L), tuple(3L, 0L));
+	}
+}
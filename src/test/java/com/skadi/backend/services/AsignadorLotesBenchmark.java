@@ -0,0 +1,72 @@
+package com.skadi.backend.services;
+
+import com.skadi.backend.services.AsignadorLotes.LoteEnCola;
+import com.skadi.backend.services.AsignadorLotes.PorcionLote;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Asignación sobre una cola ya ordenada frente a ordenar la cola en cada venta, que es lo que
+ * hacía la consulta FIFO con ORDER BY por vencimiento.
+ * <p>
+ * Se ejecuta desde las clases de test:
+ * {@code java -cp target/test-classes:<classpath de test> org.openjdk.jmh.Main AsignadorLotesBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AsignadorLotesBenchmark {
+
+	@Param({ "5", "50", "500" })
+	private int lotes;
+
+	private List<LoteEnCola> cola;
+	private List<LoteEnCola> desordenada;
+	private Map<Long, Integer> disponibles;
+	private int cantidad;
+
+	@Setup
+	public void preparar() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		desordenada = IntStream.range(0, lotes)
+				.mapToObj(i -> new LoteEnCola((long) i, 1L, (long) i,
+						i % 10 == 0 ? null : LocalDate.of(2026, 1, 1).plusDays(random.nextInt(365))))
+				.toList();
+		cola = desordenada.stream().sorted(AsignadorLotes.ORDEN_FEFO).toList();
+		disponibles = new HashMap<>();
+		desordenada.forEach(lote -> disponibles.put(lote.stockId(), 1 + random.nextInt(20)));
+		// Una venta que consume alrededor de la mitad del stock de la variante
+		cantidad = disponibles.values().stream().mapToInt(Integer::intValue).sum() / 2;
+	}
+
+	@Benchmark
+	public List<PorcionLote> colaOrdenada() {
+		return AsignadorLotes.asignar(cola, disponibles, null, false, cantidad);
+	}
+
+	@Benchmark
+	public List<PorcionLote> ordenarEnCadaVenta() {
+		return AsignadorLotes.asignar(desordenada.stream().sorted(AsignadorLotes.ORDEN_FEFO).toList(),
+				disponibles, null, false, cantidad);
+	}
+}
@@ -0,0 +1,111 @@
+package com.skadi.backend.services;
+
+import com.skadi.backend.repositories.StockAlmacenRepository;
+import com.skadi.backend.services.AsignadorLotes.LoteEnCola;
+import com.skadi.backend.services.AsignadorLotes.PorcionLote;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AsignadorLotesTest {
+
+	private static final LoteEnCola VENCE_MARZO = new LoteEnCola(10L, 1L, 100L, LocalDate.of(2026, 3, 1));
+	private static final LoteEnCola VENCE_ENERO = new LoteEnCola(11L, 1L, 101L, LocalDate.of(2026, 1, 1));
+	private static final LoteEnCola SIN_VENCIMIENTO = new LoteEnCola(12L, 1L, 102L, null);
+	private static final LoteEnCola SIN_LOTE_NUEVO = new LoteEnCola(14L, 1L, null, null);
+	private static final LoteEnCola SIN_LOTE = new LoteEnCola(13L, 1L, null, null);
+
+	private static List<LoteEnCola> cola() {
+		return Stream.of(SIN_LOTE_NUEVO, VENCE_MARZO, SIN_LOTE, SIN_VENCIMIENTO, VENCE_ENERO)
+				.sorted(AsignadorLotes.ORDEN_FEFO)
+				.toList();
+	}
+
+	@Test
+	void ordenaPorVencimientoYLuegoPorIngreso() {
+		assertThat(cola()).containsExactly(VENCE_ENERO, VENCE_MARZO, SIN_VENCIMIENTO, SIN_LOTE, SIN_LOTE_NUEVO);
+	}
+
+	@Test
+	void asignaPrimeroLoQueVenceAntes() {
+		Map<Long, Integer> disponibles = Map.of(10L, 5, 11L, 3, 12L, 4, 13L, 10, 14L, 10);
+
+		List<PorcionLote> porciones = AsignadorLotes.asignar(cola(), disponibles, null, false, 10);
+
+		assertThat(porciones).containsExactly(
+				new PorcionLote(11L, 101L, 3),
+				new PorcionLote(10L, 100L, 5),
+				new PorcionLote(12L, 102L, 2));
+	}
+
+	@Test
+	void omiteFilasSinStock() {
+		Map<Long, Integer> disponibles = Map.of(11L, 0, 13L, 2);
+
+		List<PorcionLote> porciones = AsignadorLotes.asignar(cola(), disponibles, null, false, 2);
+
+		assertThat(porciones).containsExactly(new PorcionLote(13L, null, 2));
+	}
+
+	@Test
+	void conLoteIndicadoSoloUsaEseLote() {
+		Map<Long, Integer> disponibles = Map.of(10L, 5, 11L, 3);
+
+		List<PorcionLote> porciones = AsignadorLotes.asignar(cola(), disponibles, 100L, false, 4);
+
+		assertThat(porciones).containsExactly(new PorcionLote(10L, 100L, 4));
+	}
+
+	@Test
+	void siRequiereLoteOmiteElStockSinLote() {
+		Map<Long, Integer> disponibles = Map.of(12L, 1, 13L, 10, 14L, 10);
+
+		List<PorcionLote> porciones = AsignadorLotes.asignar(cola(), disponibles, null, true, 5);
+
+		assertThat(porciones).containsExactly(new PorcionLote(12L, 102L, 1));
+	}
+
+	@Test
+	void sinStockSuficienteAsignaLoQueHay() {
+		Map<Long, Integer> disponibles = Map.of(10L, 2, 11L, 1);
+
+		List<PorcionLote> porciones = AsignadorLotes.asignar(cola(), disponibles, null, false, 7);
+
+		assertThat(porciones).extracting(PorcionLote::cantidad).containsExactly(1, 2);
+	}
+
+	@Test
+	void cargaLaColaUnaVezYAplicaLosCambios() {
+		StockAlmacenRepository repository = mock(StockAlmacenRepository.class);
+		when(repository.findColaFEFO(eq(7L), any())).thenReturn(List.of(VENCE_MARZO, SIN_LOTE));
+		AsignadorLotes asignador = new AsignadorLotes(repository, 100, Duration.ofMinutes(5));
+
+		assertThat(asignador.colas(7L, Set.of(1L, 2L)))
+				.containsEntry(1L, List.of(VENCE_MARZO, SIN_LOTE))
+				.containsEntry(2L, List.of());
+
+		// Sin transacción activa los cambios se aplican de inmediato
+		asignador.actualizar(7L, VENCE_ENERO, true);
+		asignador.retirarAgotados(7L, Map.of(1L, Set.of(13L)));
+
+		assertThat(asignador.colas(7L, Set.of(1L, 2L)).get(1L)).containsExactly(VENCE_ENERO, VENCE_MARZO);
+		verify(repository, times(1)).findColaFEFO(eq(7L), any());
+
+		asignador.invalidar(7L, 1L);
+		asignador.colas(7L, Set.of(1L));
+		verify(repository, times(2)).findColaFEFO(eq(7L), any());
+	}
+}
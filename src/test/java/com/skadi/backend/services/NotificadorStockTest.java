@@ -0,0 +1,121 @@
+package com.skadi.backend.services;
+
+import com.skadi.backend.dto.StockEventoDTO;
+import com.skadi.backend.security.TenantContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+class NotificadorStockTest {
+
+	private NotificadorStock notificador;
+	private MockHttpServletResponse respuesta;
+
+	@RestController
+	static class Controlador {
+		private final NotificadorStock notificador;
+
+		Controlador(NotificadorStock notificador) {
+			this.notificador = notificador;
+		}
+
+		@GetMapping("/stream")
+		SseEmitter stream() {
+			return notificador.suscribir();
+		}
+	}
+
+	@BeforeEach
+	void suscribir() throws Exception {
+		notificador = new NotificadorStock(new SimpleMeterRegistry(), 2, Duration.ofMinutes(1), Duration.ofMinutes(1));
+		MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new Controlador(notificador)).build();
+		TenantContext.setCurrentTenant(1L);
+		respuesta = mockMvc.perform(get("/stream")).andReturn().getResponse();
+	}
+
+	@AfterEach
+	void limpiar() {
+		TenantContext.clear();
+		notificador.detener();
+	}
+
+	@Test
+	void combinaLosCambiosDeUnaFilaYDescartaLosAtrasados() throws Exception {
+		notificador.publicar(1L, List.of(evento(10L, 7, 5L)));
+		esperarContenido("\"stock\":7");
+
+		// Un commit anterior que avisa tarde no pisa el valor más reciente
+		notificador.publicar(1L, List.of(evento(10L, 9, 4L), evento(11L, 3, 1L)));
+		esperarContenido("\"stockId\":11");
+
+		assertThat(respuesta.getContentAsString()).doesNotContain("\"stock\":9");
+	}
+
+	@Test
+	void avisaDesbordeAlSuperarElBuffer() throws Exception {
+		notificador.publicar(1L, List.of(evento(10L, 1, 1L), evento(11L, 1, 1L), evento(12L, 1, 1L)));
+
+		esperarContenido("event:desborde");
+		assertThat(respuesta.getContentAsString()).doesNotContain("event:stock");
+	}
+
+	@Test
+	void enviaSoloDespuesDelCommit() throws Exception {
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			notificador.publicar(1L, List.of(evento(10L, 4, 1L)));
+			List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+			Thread.sleep(200);
+			assertThat(respuesta.getContentAsString()).doesNotContain("event:stock");
+
+			sincronizaciones.forEach(TransactionSynchronization::afterCommit);
+			esperarContenido("\"stock\":4");
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	void noEnviaSiLaTransaccionSeRevierte() throws Exception {
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			notificador.publicar(1L, List.of(evento(10L, 4, 1L)));
+			TransactionSynchronizationManager.getSynchronizations()
+					.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		// Un evento posterior sin transacción marca cuándo ya se envió todo lo anterior
+		notificador.publicar(1L, List.of(evento(11L, 8, 1L)));
+		esperarContenido("\"stockId\":11");
+		assertThat(respuesta.getContentAsString()).doesNotContain("\"stockId\":10");
+	}
+
+	private static StockEventoDTO evento(Long stockId, int stock, long secuencia) {
+		return new StockEventoDTO(stockId, 1L, 1L, null, stock, secuencia);
+	}
+
+	private void esperarContenido(String texto) throws Exception {
+		long limite = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+		while (!respuesta.getContentAsString().contains(texto)) {
+			assertThat(System.nanoTime()).as("evento con %s", texto).isLessThan(limite);
+			Thread.sleep(20);
+		}
+	}
+}
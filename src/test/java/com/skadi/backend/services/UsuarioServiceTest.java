@@ -0,0 +1,113 @@
+package com.skadi.backend.services;
+
+import com.skadi.backend.dto.UsuarioDTO;
+import com.skadi.backend.entities.Empresa;
+import com.skadi.backend.entities.Usuario;
+import com.skadi.backend.repositories.EmpresaRepository;
+import com.skadi.backend.repositories.UsuarioRepository;
+import com.skadi.backend.security.RevocacionTokens;
+import com.skadi.backend.security.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UsuarioServiceTest {
+
+	// Transacciones sin recurso: solo activan las sincronizaciones de commit y rollback
+	private static class TransaccionesEnMemoria extends AbstractPlatformTransactionManager {
+		@Override
+		protected Object doGetTransaction() {
+			return new Object();
+		}
+
+		@Override
+		protected void doBegin(Object transaction, TransactionDefinition definition) {
+		}
+
+		@Override
+		protected void doCommit(DefaultTransactionStatus status) {
+		}
+
+		@Override
+		protected void doRollback(DefaultTransactionStatus status) {
+		}
+	}
+
+	private final UsuarioRepository usuarioRepository = mock(UsuarioRepository.class);
+	private final RevocacionTokens revocacionTokens = new RevocacionTokens(60_000);
+	private final TransactionTemplate transaccion = new TransactionTemplate(new TransaccionesEnMemoria());
+	private UsuarioService usuarioService;
+
+	@BeforeEach
+	void preparar() {
+		usuarioService = new UsuarioService(usuarioRepository, mock(EmpresaRepository.class),
+				NoOpPasswordEncoder.getInstance(), revocacionTokens);
+		Usuario usuario = Usuario.builder()
+				.id(1L)
+				.empresa(Empresa.builder().id(1L).build())
+				.username("caja")
+				.passwordHash("x")
+				.rol("operador")
+				.versionToken(0)
+				.build();
+		when(usuarioRepository.findById(1L)).thenReturn(Optional.of(usuario));
+		when(usuarioRepository.save(any())).thenAnswer(invocacion -> invocacion.getArgument(0));
+		TenantContext.setCurrentTenant(1L);
+	}
+
+	@AfterEach
+	void limpiar() {
+		TenantContext.clear();
+	}
+
+	@Test
+	void unCambioRevertidoNoRevocaLosTokens() {
+		doThrow(new DataIntegrityViolationException("username duplicado")).when(usuarioRepository).save(any());
+
+		assertThatThrownBy(() -> transaccion.executeWithoutResult(estado -> usuarioService.update(1L, cambioDeRol())))
+				.isInstanceOf(DataIntegrityViolationException.class);
+
+		assertThat(revocacionTokens.isRevocado(1L, 0)).isFalse();
+	}
+
+	@Test
+	void unCambioConfirmadoRevocaLosTokensAnteriores() {
+		transaccion.executeWithoutResult(estado -> {
+			usuarioService.update(1L, cambioDeRol());
+			// Antes del commit los tokens todavía valen
+			assertThat(revocacionTokens.isRevocado(1L, 0)).isFalse();
+		});
+
+		assertThat(revocacionTokens.isRevocado(1L, 0)).isTrue();
+		assertThat(revocacionTokens.isRevocado(1L, 1)).isFalse();
+	}
+
+	@Test
+	void unaBajaRevertidaNoRevocaLosTokens() {
+		transaccion.executeWithoutResult(estado -> {
+			usuarioService.delete(1L);
+			estado.setRollbackOnly();
+		});
+
+		assertThat(revocacionTokens.isRevocado(1L, 0)).isFalse();
+	}
+
+	private static UsuarioDTO cambioDeRol() {
+		return UsuarioDTO.builder().username("caja").rol("admin").build();
+	}
+}
@@ -0,0 +1,89 @@
+package com.skadi.backend.services;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.skadi.backend.dto.VentaBatchResultadoDTO;
+import com.skadi.backend.dto.VentaDTO;
+import com.skadi.backend.entities.Venta;
+import com.skadi.backend.security.TenantContext;
+import com.skadi.backend.security.UsuarioPrincipal;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class VentaBatchServiceTest {
+
+	private final VentaService ventaService = mock(VentaService.class);
+	private VentaBatchService ventaBatchService;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void preparar() {
+		ReintentoBloqueos reintentoBloqueos = mock(ReintentoBloqueos.class);
+		when(reintentoBloqueos.ejecutar(anyString(), any())).thenAnswer(i -> ((Supplier<Object>) i.getArgument(1)).get());
+
+		// Cada venta registrada recibe el siguiente id
+		AtomicLong ids = new AtomicLong();
+		when(ventaService.registrarVentas(any(), any(), any(), anyList())).thenAnswer(i -> ((List<VentaDTO>) i.getArgument(3))
+				.stream()
+				.map(dto -> Venta.builder().id(ids.incrementAndGet()).build())
+				.toList());
+
+		ventaBatchService = new VentaBatchService(ventaService, mock(ReferenciaService.class),
+				JsonMapper.builder().findAndAddModules().build(),
+				Validation.buildDefaultValidatorFactory().getValidator(), reintentoBloqueos);
+		ReflectionTestUtils.setField(ventaBatchService, "tamanioBloque", 100);
+
+		TenantContext.setCurrentTenant(1L);
+		SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+				new UsuarioPrincipal(1L, "caja", 1L, "operador"), null, List.of()));
+	}
+
+	@AfterEach
+	void limpiar() {
+		TenantContext.clear();
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void unValorInvalidoSoloRechazaEsaVenta() throws Exception {
+		String body = "["
+				+ venta("B-1", "\"2026-01-15T14:00:00\"") + ","
+				+ venta("B-2", "\"15/01/2026\"") + ","
+				+ venta("B-3", "\"2026-01-15T15:00:00\"")
+				+ "]";
+
+		List<VentaBatchResultadoDTO> resultados = ventaBatchService.registrar(
+				new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+		assertThat(resultados)
+				.extracting(VentaBatchResultadoDTO::getIndice, VentaBatchResultadoDTO::getNumeroDocumento,
+						VentaBatchResultadoDTO::getVentaId, VentaBatchResultadoDTO::getError)
+				.containsExactly(
+						tuple(0, "B-1", 1L, null),
+						tuple(1, "B-2", null, "Valor inválido en fecha"),
+						tuple(2, "B-3", 2L, null));
+	}
+
+	private static String venta(String numeroDocumento, String fecha) {
+		return "{\"almacenId\": 1, \"numeroDocumento\": \"" + numeroDocumento + "\", \"fecha\": " + fecha
+				+ ", \"detalles\": [{\"varianteId\": 1, \"cantidad\": 1, \"precioUnitario\": 2}]}";
+	}
+}
@@ -0,0 +1,56 @@
+package com.skadi.backend.services;
+
+import com.skadi.backend.entities.Lote;
+import com.skadi.backend.entities.ProductoVariante;
+import com.skadi.backend.services.AsignadorLotes.LoteEnCola;
+import com.skadi.backend.services.AsignadorLotes.PorcionLote;
+import com.skadi.backend.services.VentaService.Demanda;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VentaServiceTest {
+
+	private static final ProductoVariante VARIANTE = ProductoVariante.builder().id(1L).nombre("V1").build();
+	private static final Lote LOTE_ENERO = Lote.builder().id(100L).codigoLote("L-ENE").build();
+	private static final Lote LOTE_MARZO = Lote.builder().id(101L).codigoLote("L-MAR").build();
+
+	// El lote de enero es el primero en la cola FEFO
+	private static final Map<Long, List<LoteEnCola>> COLAS = Map.of(1L, List.of(
+			new LoteEnCola(10L, 1L, 100L, LocalDate.of(2026, 1, 1)),
+			new LoteEnCola(11L, 1L, 101L, LocalDate.of(2026, 3, 1))));
+
+	@Test
+	void asignaPrimeroLaDemandaConLoteIndicado() {
+		// "5 de cualquier lote" llega antes que "5 del lote de enero"
+		Map<Demanda, Integer> demandas = new LinkedHashMap<>();
+		demandas.put(new Demanda(VARIANTE, null, false), 5);
+		demandas.put(new Demanda(VARIANTE, LOTE_ENERO, false), 5);
+		Map<Long, Integer> disponibles = new HashMap<>(Map.of(10L, 5, 11L, 5));
+
+		Map<Demanda, List<PorcionLote>> plan = VentaService.planificar(demandas, COLAS, disponibles);
+
+		assertThat(plan.get(new Demanda(VARIANTE, LOTE_ENERO, false)))
+				.containsExactly(new PorcionLote(10L, 100L, 5));
+		assertThat(plan.get(new Demanda(VARIANTE, null, false)))
+				.containsExactly(new PorcionLote(11L, 101L, 5));
+		assertThat(disponibles).containsEntry(10L, 0).containsEntry(11L, 0);
+	}
+
+	@Test
+	void dejaIncompletaLaDemandaSinStock() {
+		Map<Demanda, Integer> demandas = Map.of(new Demanda(VARIANTE, LOTE_MARZO, false), 7);
+		Map<Long, Integer> disponibles = new HashMap<>(Map.of(10L, 5, 11L, 5));
+
+		Map<Demanda, List<PorcionLote>> plan = VentaService.planificar(demandas, COLAS, disponibles);
+
+		assertThat(plan.get(new Demanda(VARIANTE, LOTE_MARZO, false)))
+				.containsExactly(new PorcionLote(11L, 101L, 5));
+	}
+}